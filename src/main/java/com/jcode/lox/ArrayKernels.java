@@ -0,0 +1,83 @@
+package com.jcode.lox;
+
+// Bulk operations over the double[] storage of numeric arrays. The
+// elementwise loops are plain counted loops over arrays, which C2 compiles
+// to SIMD instructions. Reductions keep four independent accumulators, as
+// floating point reductions are otherwise left scalar to preserve their
+// order of additions.
+final class ArrayKernels {
+	private ArrayKernels() {
+	}
+
+	static void add(double[] a, double[] b, double[] out, int n) {
+		for (int i = 0; i < n; i++) {
+			out[i] = a[i] + b[i];
+		}
+	}
+
+	static void mul(double[] a, double[] b, double[] out, int n) {
+		for (int i = 0; i < n; i++) {
+			out[i] = a[i] * b[i];
+		}
+	}
+
+	static void scale(double[] a, double factor, double[] out, int n) {
+		for (int i = 0; i < n; i++) {
+			out[i] = a[i] * factor;
+		}
+	}
+
+	static double sum(double[] a, int n) {
+		double s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+		int i = 0;
+		for (; i + 3 < n; i += 4) {
+			s0 += a[i];
+			s1 += a[i + 1];
+			s2 += a[i + 2];
+			s3 += a[i + 3];
+		}
+
+		for (; i < n; i++) {
+			s0 += a[i];
+		}
+
+		return (s0 + s1) + (s2 + s3);
+	}
+
+	static double dot(double[] a, double[] b, int n) {
+		double s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+		int i = 0;
+		for (; i + 3 < n; i += 4) {
+			s0 += a[i] * b[i];
+			s1 += a[i + 1] * b[i + 1];
+			s2 += a[i + 2] * b[i + 2];
+			s3 += a[i + 3] * b[i + 3];
+		}
+
+		for (; i < n; i++) {
+			s0 += a[i] * b[i];
+		}
+
+		return (s0 + s1) + (s2 + s3);
+	}
+
+	// Only called on non-empty arrays
+	static double min(double[] a, int n) {
+		double min = a[0];
+		for (int i = 1; i < n; i++) {
+			min = Math.min(min, a[i]);
+		}
+
+		return min;
+	}
+
+	// Only called on non-empty arrays
+	static double max(double[] a, int n) {
+		double max = a[0];
+		for (int i = 1; i < n; i++) {
+			max = Math.max(max, a[i]);
+		}
+
+		return max;
+	}
+}
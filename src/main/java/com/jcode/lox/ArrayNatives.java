@@ -0,0 +1,332 @@
+package com.jcode.lox;
+
+import java.util.List;
+
+class ArrayNatives {
+	static void define(Environment globals) {
+		globals.define("array", new LoxCallable() {
+			@Override
+			public int arity() {
+				return 2;
+			}
+
+			@Override
+			public Object call(Interpreter interpreter, List<Object> args) {
+				Object size = args.get(0);
+				if (!(size instanceof Double) || (double) size < 0 || (double) size != Math.floor((double) size)
+						|| (double) size > Integer.MAX_VALUE - 8) {
+					throw new NativeFnError("Array size must be a non-negative whole number.");
+				}
+
+				return new LoxArray((int) (double) size, args.get(1));
+			}
+
+			@Override
+			public String toString() {
+				return "<native fn>";
+			}
+		});
+
+		globals.define("len", new LoxCallable() {
+			@Override
+			public int arity() {
+				return 1;
+			}
+
+			@Override
+			public Object call(Interpreter interpreter, List<Object> args) {
+				Object arg = args.get(0);
+				if (arg instanceof String)
+					return (double) ((String) arg).length();
+				if (arg instanceof LoxMap)
+					return (double) ((LoxMap) arg).size();
+
+				return (double) arrayArg("len", arg).size();
+			}
+
+			@Override
+			public String toString() {
+				return "<native fn>";
+			}
+		});
+
+		globals.define("push", new LoxCallable() {
+			@Override
+			public int arity() {
+				return 2;
+			}
+
+			@Override
+			public Object call(Interpreter interpreter, List<Object> args) {
+				arrayArg("push", args.get(0)).add(args.get(1));
+				return null;
+			}
+
+			@Override
+			public String toString() {
+				return "<native fn>";
+			}
+		});
+
+		globals.define("pop", new LoxCallable() {
+			@Override
+			public int arity() {
+				return 1;
+			}
+
+			@Override
+			public Object call(Interpreter interpreter, List<Object> args) {
+				LoxArray array = arrayArg("pop", args.get(0));
+				if (array.size() == 0) {
+					throw new NativeFnError("Can't pop from an empty array.");
+				}
+
+				return array.removeLast();
+			}
+
+			@Override
+			public String toString() {
+				return "<native fn>";
+			}
+		});
+
+		globals.define("fill", new LoxCallable() {
+			@Override
+			public int arity() {
+				return 2;
+			}
+
+			@Override
+			public Object call(Interpreter interpreter, List<Object> args) {
+				arrayArg("fill", args.get(0)).fill(args.get(1));
+				return null;
+			}
+
+			@Override
+			public String toString() {
+				return "<native fn>";
+			}
+		});
+
+		globals.define("copy", new LoxCallable() {
+			@Override
+			public int arity() {
+				return 1;
+			}
+
+			@Override
+			public Object call(Interpreter interpreter, List<Object> args) {
+				return arrayArg("copy", args.get(0)).copy();
+			}
+
+			@Override
+			public String toString() {
+				return "<native fn>";
+			}
+		});
+
+		globals.define("sum", new LoxCallable() {
+			@Override
+			public int arity() {
+				return 1;
+			}
+
+			@Override
+			public Object call(Interpreter interpreter, List<Object> args) {
+				LoxArray array = arrayArg("sum", args.get(0));
+				if (!array.isNumeric()) {
+					throw new NativeFnError("Can only sum arrays of numbers.");
+				}
+
+				return array.sum();
+			}
+
+			@Override
+			public String toString() {
+				return "<native fn>";
+			}
+		});
+
+		globals.define("sort", new LoxCallable() {
+			@Override
+			public int arity() {
+				return 1;
+			}
+
+			@Override
+			public Object call(Interpreter interpreter, List<Object> args) {
+				if (!arrayArg("sort", args.get(0)).sort()) {
+					throw new NativeFnError("Can only sort arrays of numbers or of strings.");
+				}
+
+				return null;
+			}
+
+			@Override
+			public String toString() {
+				return "<native fn>";
+			}
+		});
+
+		globals.define("add", new LoxCallable() {
+			@Override
+			public int arity() {
+				return 2;
+			}
+
+			@Override
+			public Object call(Interpreter interpreter, List<Object> args) {
+				LoxArray a = numericArg("add", args.get(0));
+				LoxArray b = numericArg("add", args.get(1));
+				int size = sameSize("add", a, b);
+
+				double[] out = new double[Math.max(size, 4)];
+				ArrayKernels.add(a.numbers(), b.numbers(), out, size);
+				return LoxArray.ofNumbers(out, size);
+			}
+
+			@Override
+			public String toString() {
+				return "<native fn>";
+			}
+		});
+
+		globals.define("mul", new LoxCallable() {
+			@Override
+			public int arity() {
+				return 2;
+			}
+
+			@Override
+			public Object call(Interpreter interpreter, List<Object> args) {
+				LoxArray a = numericArg("mul", args.get(0));
+				LoxArray b = numericArg("mul", args.get(1));
+				int size = sameSize("mul", a, b);
+
+				double[] out = new double[Math.max(size, 4)];
+				ArrayKernels.mul(a.numbers(), b.numbers(), out, size);
+				return LoxArray.ofNumbers(out, size);
+			}
+
+			@Override
+			public String toString() {
+				return "<native fn>";
+			}
+		});
+
+		globals.define("scale", new LoxCallable() {
+			@Override
+			public int arity() {
+				return 2;
+			}
+
+			@Override
+			public Object call(Interpreter interpreter, List<Object> args) {
+				LoxArray array = numericArg("scale", args.get(0));
+				Object factor = args.get(1);
+				if (!(factor instanceof Double)) {
+					throw new NativeFnError("Can only scale an array by a number.");
+				}
+
+				double[] out = new double[Math.max(array.size(), 4)];
+				ArrayKernels.scale(array.numbers(), (double) factor, out, array.size());
+				return LoxArray.ofNumbers(out, array.size());
+			}
+
+			@Override
+			public String toString() {
+				return "<native fn>";
+			}
+		});
+
+		globals.define("dot", new LoxCallable() {
+			@Override
+			public int arity() {
+				return 2;
+			}
+
+			@Override
+			public Object call(Interpreter interpreter, List<Object> args) {
+				LoxArray a = numericArg("dot", args.get(0));
+				LoxArray b = numericArg("dot", args.get(1));
+				return ArrayKernels.dot(a.numbers(), b.numbers(), sameSize("dot", a, b));
+			}
+
+			@Override
+			public String toString() {
+				return "<native fn>";
+			}
+		});
+
+		globals.define("min", new LoxCallable() {
+			@Override
+			public int arity() {
+				return 1;
+			}
+
+			@Override
+			public Object call(Interpreter interpreter, List<Object> args) {
+				LoxArray array = numericArg("min", args.get(0));
+				if (array.size() == 0) {
+					throw new NativeFnError("Can't call 'min()' on an empty array.");
+				}
+
+				return ArrayKernels.min(array.numbers(), array.size());
+			}
+
+			@Override
+			public String toString() {
+				return "<native fn>";
+			}
+		});
+
+		globals.define("max", new LoxCallable() {
+			@Override
+			public int arity() {
+				return 1;
+			}
+
+			@Override
+			public Object call(Interpreter interpreter, List<Object> args) {
+				LoxArray array = numericArg("max", args.get(0));
+				if (array.size() == 0) {
+					throw new NativeFnError("Can't call 'max()' on an empty array.");
+				}
+
+				return ArrayKernels.max(array.numbers(), array.size());
+			}
+
+			@Override
+			public String toString() {
+				return "<native fn>";
+			}
+		});
+	}
+
+	static LoxArray arrayArg(String name, Object arg) {
+		if (!(arg instanceof LoxArray)) {
+			throw new NativeFnError("Can only call '" + name + "()' on arrays.");
+		}
+
+		return (LoxArray) arg;
+	}
+
+	// An array holding only numbers, however it's stored. Once this returns,
+	// numbers() is valid for the kernels.
+	private static LoxArray numericArg(String name, Object arg) {
+		LoxArray array = arrayArg(name, arg);
+		if (!array.isNumeric()) {
+			throw new NativeFnError("Can only call '" + name + "()' on arrays of numbers.");
+		}
+
+		return array;
+	}
+
+	private static int sameSize(String name, LoxArray a, LoxArray b) {
+		if (a.size() != b.size()) {
+			throw new NativeFnError("Arrays passed to '" + name + "()' must be the same length.");
+		}
+
+		return a.size();
+	}
+}
@@ -0,0 +1,869 @@
+package com.jcode.lox;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import com.jcode.lox.Expr.Array;
+import com.jcode.lox.Expr.Assign;
+import com.jcode.lox.Expr.Binary;
+import com.jcode.lox.Expr.Bound;
+import com.jcode.lox.Expr.Call;
+import com.jcode.lox.Expr.Dictionary;
+import com.jcode.lox.Expr.Get;
+import com.jcode.lox.Expr.GetThis;
+import com.jcode.lox.Expr.Grouping;
+import com.jcode.lox.Expr.Hoisted;
+import com.jcode.lox.Expr.Increment;
+import com.jcode.lox.Expr.Index;
+import com.jcode.lox.Expr.IndexSet;
+import com.jcode.lox.Expr.Inline;
+import com.jcode.lox.Expr.Invoke;
+import com.jcode.lox.Expr.Literal;
+import com.jcode.lox.Expr.LocalCompare;
+import com.jcode.lox.Expr.Logical;
+import com.jcode.lox.Expr.Negate;
+import com.jcode.lox.Expr.NumericBinary;
+import com.jcode.lox.Expr.Set;
+import com.jcode.lox.Expr.Super;
+import com.jcode.lox.Expr.Ternary;
+import com.jcode.lox.Expr.This;
+import com.jcode.lox.Expr.Unary;
+import com.jcode.lox.Expr.Variable;
+import com.jcode.lox.Stmt.Block;
+import com.jcode.lox.Stmt.Break;
+import com.jcode.lox.Stmt.Class;
+import com.jcode.lox.Stmt.Continue;
+import com.jcode.lox.Stmt.Expression;
+import com.jcode.lox.Stmt.Function;
+import com.jcode.lox.Stmt.Hoist;
+import com.jcode.lox.Stmt.If;
+import com.jcode.lox.Stmt.Return;
+import com.jcode.lox.Stmt.Var;
+import com.jcode.lox.Stmt.While;
+
+// Stores resolved syntax trees on disk, keyed by a hash of the script and
+// the format version, so unchanged scripts skip scanning, parsing and
+// resolving. Bump VERSION whenever the tree or this format changes. The
+// header holds the payload's length and CRC32, so a damaged entry is a miss
+// rather than a different program.
+class AstCache {
+	private static final int MAGIC = 0x4c4f5841;
+	private static final int VERSION = 11;
+
+	private static final byte NULL = 0;
+
+	private static final byte TERNARY = 1;
+	private static final byte ASSIGN = 2;
+	private static final byte BINARY = 3;
+	private static final byte CALL = 4;
+	private static final byte GET = 5;
+	private static final byte SET = 6;
+	private static final byte THIS = 7;
+	private static final byte SUPER = 8;
+	private static final byte GROUPING = 9;
+	private static final byte LITERAL = 10;
+	private static final byte LOGICAL = 11;
+	private static final byte VARIABLE = 12;
+	private static final byte UNARY = 13;
+	private static final byte INDEX = 14;
+	private static final byte INDEX_SET = 15;
+	private static final byte ARRAY = 16;
+	private static final byte DICTIONARY = 17;
+	private static final byte INLINE = 18;
+	private static final byte HOISTED = 19;
+	private static final byte BOUND = 31;
+	private static final byte NUMERIC_BINARY = 32;
+	private static final byte NEGATE = 33;
+	private static final byte INCREMENT = 34;
+	private static final byte LOCAL_COMPARE = 35;
+	private static final byte INVOKE = 36;
+	private static final byte GET_THIS = 37;
+
+	private static final byte BREAK = 20;
+	private static final byte CONTINUE = 21;
+	private static final byte BLOCK = 22;
+	private static final byte EXPRESSION = 23;
+	private static final byte FUNCTION = 24;
+	private static final byte CLASS = 25;
+	private static final byte RETURN = 26;
+	private static final byte IF = 27;
+	private static final byte WHILE = 28;
+	private static final byte VAR = 29;
+	private static final byte HOIST = 30;
+
+	private static final byte NIL_VALUE = 0;
+	private static final byte TRUE_VALUE = 1;
+	private static final byte FALSE_VALUE = 2;
+	private static final byte NUMBER_VALUE = 3;
+	private static final byte STRING_VALUE = 4;
+
+	private static final TokenType[] TOKEN_TYPES = TokenType.values();
+
+	private final Path directory;
+
+	AstCache(Path directory) {
+		this.directory = directory;
+	}
+
+	// Optimised trees are cached, so the passes that ran are part of the key
+	static String key(Path script, java.util.Set<Optimisation> optimisations) throws IOException {
+		MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+
+		try (FileChannel channel = FileChannel.open(script, StandardOpenOption.READ)) {
+			digest.update(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+		}
+
+		digest.update(ByteBuffer.allocate(4).putInt(0, VERSION));
+		for (Optimisation optimisation : optimisations) {
+			digest.update((byte) optimisation.ordinal());
+		}
+
+		StringBuilder key = new StringBuilder();
+		for (byte b : digest.digest()) {
+			key.append(String.format("%02x", b));
+		}
+
+		return key.toString();
+	}
+
+	// Returns null on a miss, or if the cached file can't be read
+	LoxProgram load(String key) {
+		Path file = directory.resolve(key + ".ast");
+
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			ByteBuffer bytes = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			if (bytes.getInt() != MAGIC || bytes.getInt() != VERSION)
+				return null;
+
+			int length = bytes.getInt();
+			int checksum = bytes.getInt();
+			if (length != bytes.remaining())
+				return null;
+
+			CRC32 crc = new CRC32();
+			crc.update(bytes.duplicate());
+			if ((int) crc.getValue() != checksum)
+				return null;
+
+			Reader reader = new Reader(bytes);
+			return new LoxProgram(reader.statements(), reader.locals);
+		} catch (NoSuchFileException e) {
+			return null;
+		} catch (IOException | RuntimeException e) {
+			// A corrupt or truncated entry is treated as a miss
+			return null;
+		}
+	}
+
+	void store(String key, LoxProgram program) {
+		try {
+			Files.createDirectories(directory);
+
+			ByteArrayOutputStream payload = new ByteArrayOutputStream();
+			try (DataOutputStream out = new DataOutputStream(payload)) {
+				new Writer(out, program.locals).statements(program.statements);
+			}
+
+			CRC32 crc = new CRC32();
+			crc.update(payload.toByteArray());
+
+			// Write then rename, so concurrent runs never see a partial file
+			Path temp = Files.createTempFile(directory, key, ".tmp");
+			try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+				out.writeInt(MAGIC);
+				out.writeInt(VERSION);
+				out.writeInt(payload.size());
+				out.writeInt((int) crc.getValue());
+				payload.writeTo(out);
+			}
+
+			Files.move(temp, directory.resolve(key + ".ast"), StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException | UncheckedIOException e) {
+			// Caching is best effort
+		}
+	}
+
+	private static class Writer implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
+		private final DataOutputStream out;
+		private final IntNodeTable locals;
+		private final Map<String, Integer> strings = new HashMap<>();
+		private final Map<Token, Integer> tokenIndexes = new IdentityHashMap<>();
+
+		Writer(DataOutputStream out, IntNodeTable locals) {
+			this.out = out;
+			this.locals = locals;
+		}
+
+		void statements(List<? extends Stmt> statements) throws IOException {
+			out.writeInt(statements.size());
+			for (Stmt stmt : statements) {
+				stmt(stmt);
+			}
+		}
+
+		private void stmt(Stmt stmt) throws IOException {
+			if (stmt == null) {
+				out.writeByte(NULL);
+			} else {
+				stmt.accept(this);
+			}
+		}
+
+		private void expr(Expr expr) throws IOException {
+			if (expr == null) {
+				out.writeByte(NULL);
+			} else {
+				expr.accept(this);
+			}
+		}
+
+		private void exprs(List<Expr> exprs) throws IOException {
+			out.writeInt(exprs.size());
+			for (Expr expr : exprs) {
+				expr(expr);
+			}
+		}
+
+		// Each token is written once, then referred to by index, so nodes that
+		// shared one still do when they're read back. An Inline relies on
+		// this to recognise its function's declaration.
+		private void token(Token token) throws IOException {
+			Integer index = tokenIndexes.get(token);
+			if (index != null) {
+				out.writeInt(index);
+				return;
+			}
+
+			out.writeInt(tokenIndexes.size());
+			tokenIndexes.put(token, tokenIndexes.size());
+
+			out.writeByte(token.type.ordinal());
+			string(token.lexeme);
+			out.writeInt(token.line);
+		}
+
+		private void tokens(List<Token> tokens) throws IOException {
+			out.writeInt(tokens.size());
+			for (Token token : tokens) {
+				token(token);
+			}
+		}
+
+		// Each string is written once, then referred to by index
+		private void string(String string) throws IOException {
+			Integer index = strings.get(string);
+			if (index != null) {
+				out.writeInt(index);
+				return;
+			}
+
+			out.writeInt(strings.size());
+			strings.put(string, strings.size());
+
+			byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+			out.writeInt(bytes.length);
+			out.write(bytes);
+		}
+
+		// An unresolved node's is MISSING, which is -1
+		private void depth(Expr expr) throws IOException {
+			out.writeInt(locals.get(expr));
+		}
+
+		// The visitor interfaces can't throw checked exceptions
+		private void write(byte tag, IOAction action) {
+			try {
+				out.writeByte(tag);
+				action.run();
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+
+		private interface IOAction {
+			void run() throws IOException;
+		}
+
+		@Override
+		public Void visitTernaryExpr(Ternary expr) {
+			write(TERNARY, () -> {
+				expr(expr.left);
+				token(expr.op1);
+				expr(expr.middle);
+				token(expr.op2);
+				expr(expr.right);
+			});
+			return null;
+		}
+
+		@Override
+		public Void visitAssignExpr(Assign expr) {
+			write(ASSIGN, () -> {
+				token(expr.name);
+				expr(expr.value);
+				depth(expr);
+			});
+			return null;
+		}
+
+		@Override
+		public Void visitIncrementExpr(Increment expr) {
+			write(INCREMENT, () -> {
+				token(expr.name);
+				token(expr.operator);
+				out.writeDouble(expr.delta);
+				depth(expr);
+			});
+			return null;
+		}
+
+		@Override
+		public Void visitBinaryExpr(Binary expr) {
+			write(BINARY, () -> {
+				expr(expr.left);
+				token(expr.operator);
+				expr(expr.right);
+			});
+			return null;
+		}
+
+		@Override
+		public Void visitCallExpr(Call expr) {
+			write(CALL, () -> {
+				expr(expr.callee);
+				token(expr.paren);
+				exprs(expr.arguments);
+			});
+			return null;
+		}
+
+		@Override
+		public Void visitInvokeExpr(Invoke expr) {
+			write(INVOKE, () -> {
+				expr(expr.object);
+				token(expr.name);
+				token(expr.paren);
+				exprs(expr.arguments);
+			});
+			return null;
+		}
+
+		@Override
+		public Void visitNumericBinaryExpr(NumericBinary expr) {
+			write(NUMERIC_BINARY, () -> {
+				expr(expr.left);
+				token(expr.operator);
+				expr(expr.right);
+			});
+			return null;
+		}
+
+		@Override
+		public Void visitLocalCompareExpr(LocalCompare expr) {
+			write(LOCAL_COMPARE, () -> {
+				expr(expr.left);
+				token(expr.operator);
+				expr(expr.right);
+			});
+			return null;
+		}
+
+		@Override
+		public Void visitBoundExpr(Bound expr) {
+			write(BOUND, () -> {
+				expr(expr.callee);
+				token(expr.paren);
+				exprs(expr.arguments);
+			});
+			return null;
+		}
+
+		@Override
+		public Void visitInlineExpr(Inline expr) {
+			write(INLINE, () -> {
+				token(expr.name);
+				token(expr.paren);
+				tokens(expr.params);
+				exprs(expr.arguments);
+				expr(expr.body);
+			});
+			return null;
+		}
+
+		@Override
+		public Void visitHoistedExpr(Hoisted expr) {
+			write(HOISTED, () -> {
+				token(expr.slot);
+				expr(expr.expression);
+				depth(expr);
+			});
+			return null;
+		}
+
+		@Override
+		public Void visitGetExpr(Get expr) {
+			write(GET, () -> {
+				expr(expr.object);
+				token(expr.name);
+			});
+			return null;
+		}
+
+		@Override
+		public Void visitGetThisExpr(GetThis expr) {
+			write(GET_THIS, () -> {
+				expr(expr.object);
+				token(expr.name);
+			});
+			return null;
+		}
+
+		@Override
+		public Void visitSetExpr(Set expr) {
+			write(SET, () -> {
+				expr(expr.object);
+				token(expr.name);
+				expr(expr.value);
+			});
+			return null;
+		}
+
+		@Override
+		public Void visitIndexExpr(Index expr) {
+			write(INDEX, () -> {
+				expr(expr.object);
+				token(expr.bracket);
+				expr(expr.index);
+			});
+			return null;
+		}
+
+		@Override
+		public Void visitIndexSetExpr(IndexSet expr) {
+			write(INDEX_SET, () -> {
+				expr(expr.object);
+				token(expr.bracket);
+				expr(expr.index);
+				token(expr.operator);
+				expr(expr.value);
+			});
+			return null;
+		}
+
+		@Override
+		public Void visitThisExpr(This expr) {
+			write(THIS, () -> {
+				token(expr.keyword);
+				depth(expr);
+			});
+			return null;
+		}
+
+		@Override
+		public Void visitSuperExpr(Super expr) {
+			write(SUPER, () -> {
+				token(expr.keyword);
+				token(expr.method);
+				depth(expr);
+			});
+			return null;
+		}
+
+		@Override
+		public Void visitGroupingExpr(Grouping expr) {
+			write(GROUPING, () -> expr(expr.expression));
+			return null;
+		}
+
+		@Override
+		public Void visitLiteralExpr(Literal expr) {
+			write(LITERAL, () -> {
+				Object value = expr.value;
+				if (value == null) {
+					out.writeByte(NIL_VALUE);
+				} else if (value instanceof Boolean) {
+					out.writeByte((boolean) value ? TRUE_VALUE : FALSE_VALUE);
+				} else if (value instanceof Double) {
+					out.writeByte(NUMBER_VALUE);
+					out.writeDouble((double) value);
+				} else {
+					out.writeByte(STRING_VALUE);
+					string((String) value);
+				}
+			});
+			return null;
+		}
+
+		@Override
+		public Void visitArrayExpr(Array expr) {
+			write(ARRAY, () -> {
+				token(expr.bracket);
+				exprs(expr.elements);
+			});
+			return null;
+		}
+
+		@Override
+		public Void visitDictionaryExpr(Dictionary expr) {
+			write(DICTIONARY, () -> {
+				token(expr.brace);
+				exprs(expr.keys);
+				exprs(expr.values);
+			});
+			return null;
+		}
+
+		@Override
+		public Void visitLogicalExpr(Logical expr) {
+			write(LOGICAL, () -> {
+				expr(expr.left);
+				token(expr.operator);
+				expr(expr.right);
+			});
+			return null;
+		}
+
+		@Override
+		public Void visitVariableExpr(Variable expr) {
+			write(VARIABLE, () -> {
+				token(expr.name);
+				depth(expr);
+			});
+			return null;
+		}
+
+		@Override
+		public Void visitNegateExpr(Negate expr) {
+			write(NEGATE, () -> {
+				token(expr.operator);
+				expr(expr.right);
+			});
+			return null;
+		}
+
+		@Override
+		public Void visitUnaryExpr(Unary expr) {
+			write(UNARY, () -> {
+				token(expr.operator);
+				expr(expr.right);
+			});
+			return null;
+		}
+
+		@Override
+		public Void visitBreakStmt(Break stmt) {
+			write(BREAK, () -> token(stmt.keyword));
+			return null;
+		}
+
+		@Override
+		public Void visitContinueStmt(Continue stmt) {
+			write(CONTINUE, () -> token(stmt.keyword));
+			return null;
+		}
+
+		@Override
+		public Void visitBlockStmt(Block stmt) {
+			write(BLOCK, () -> statements(stmt.statements));
+			return null;
+		}
+
+		@Override
+		public Void visitExpressionStmt(Expression stmt) {
+			write(EXPRESSION, () -> expr(stmt.expression));
+			return null;
+		}
+
+		@Override
+		public Void visitFunctionStmt(Function stmt) {
+			write(FUNCTION, () -> {
+				token(stmt.name);
+				tokens(stmt.params);
+				statements(stmt.body);
+			});
+			return null;
+		}
+
+		@Override
+		public Void visitClassStmt(Class stmt) {
+			write(CLASS, () -> {
+				token(stmt.name);
+				expr(stmt.superclass);
+				statements(stmt.methods);
+			});
+			return null;
+		}
+
+		@Override
+		public Void visitReturnStmt(Return stmt) {
+			write(RETURN, () -> {
+				token(stmt.keyword);
+				expr(stmt.value);
+			});
+			return null;
+		}
+
+		@Override
+		public Void visitIfStmt(If stmt) {
+			write(IF, () -> {
+				expr(stmt.condition);
+				stmt(stmt.thenBranch);
+				stmt(stmt.elseBranch);
+			});
+			return null;
+		}
+
+		@Override
+		public Void visitWhileStmt(While stmt) {
+			write(WHILE, () -> {
+				expr(stmt.condition);
+				stmt(stmt.body);
+			});
+			return null;
+		}
+
+		@Override
+		public Void visitHoistStmt(Hoist stmt) {
+			write(HOIST, () -> {
+				tokens(stmt.slots);
+				stmt(stmt.loop);
+			});
+			return null;
+		}
+
+		@Override
+		public Void visitVarStmt(Var stmt) {
+			write(VAR, () -> {
+				token(stmt.name);
+				expr(stmt.initialiser);
+			});
+			return null;
+		}
+	}
+
+	// Reads straight from the mapped file. Trees are rebuilt in the order
+	// Writer emitted them, registering resolver depths as it goes.
+	private static class Reader {
+		private final ByteBuffer in;
+		private final List<String> strings = new ArrayList<>();
+		private final List<Token> tokenTable = new ArrayList<>();
+		final IntNodeTable locals = new IntNodeTable();
+
+		Reader(ByteBuffer in) {
+			this.in = in;
+		}
+
+		List<Stmt> statements() {
+			int count = in.getInt();
+			List<Stmt> statements = new ArrayList<>(count);
+			for (int i = 0; i < count; i++) {
+				statements.add(stmt());
+			}
+
+			return statements;
+		}
+
+		private List<Stmt.Function> functions() {
+			int count = in.getInt();
+			List<Stmt.Function> functions = new ArrayList<>(count);
+			for (int i = 0; i < count; i++) {
+				functions.add((Stmt.Function) stmt());
+			}
+
+			return functions;
+		}
+
+		private List<Expr> exprs() {
+			int count = in.getInt();
+			List<Expr> exprs = new ArrayList<>(count);
+			for (int i = 0; i < count; i++) {
+				exprs.add(expr());
+			}
+
+			return exprs;
+		}
+
+		private Token token() {
+			int index = in.getInt();
+			if (index < tokenTable.size())
+				return tokenTable.get(index);
+
+			TokenType type = TOKEN_TYPES[in.get()];
+			String lexeme = string();
+			Token token = new Token(type, lexeme, null, in.getInt());
+			tokenTable.add(token);
+			return token;
+		}
+
+		private List<Token> tokens() {
+			int count = in.getInt();
+			List<Token> tokens = new ArrayList<>(count);
+			for (int i = 0; i < count; i++) {
+				tokens.add(token());
+			}
+
+			return tokens;
+		}
+
+		private String string() {
+			int index = in.getInt();
+			if (index < strings.size())
+				return strings.get(index);
+
+			int length = in.getInt();
+			ByteBuffer bytes = in.slice();
+			bytes.limit(length);
+			in.position(in.position() + length);
+
+			String string = StandardCharsets.UTF_8.decode(bytes).toString();
+			strings.add(string);
+			return string;
+		}
+
+		private <T extends Expr> T resolved(T expr) {
+			int depth = in.getInt();
+			if (depth >= 0) {
+				locals.put(expr, depth);
+			}
+
+			return expr;
+		}
+
+		private Expr expr() {
+			byte tag = in.get();
+			switch (tag) {
+				case NULL:
+					return null;
+				case TERNARY:
+					return new Expr.Ternary(expr(), token(), expr(), token(), expr());
+				case ASSIGN:
+					return resolved(new Expr.Assign(token(), expr()));
+				case BINARY:
+					return new Expr.Binary(expr(), token(), expr());
+				case CALL:
+					return new Expr.Call(expr(), token(), exprs());
+				case NUMERIC_BINARY:
+					return new Expr.NumericBinary(expr(), token(), expr());
+				case NEGATE:
+					return new Expr.Negate(token(), expr());
+				case INCREMENT:
+					return resolved(new Expr.Increment(token(), token(), in.getDouble()));
+				case LOCAL_COMPARE:
+					return new Expr.LocalCompare((Expr.Variable) expr(), token(), (Expr.Variable) expr());
+				case INVOKE:
+					return new Expr.Invoke(expr(), token(), token(), exprs());
+				case GET_THIS:
+					return new Expr.GetThis((Expr.This) expr(), token());
+				case BOUND:
+					return new Expr.Bound((Expr.Variable) expr(), token(), exprs(), new GlobalBinding());
+				case INLINE:
+					return new Expr.Inline(token(), token(), tokens(), exprs(), expr(), new GlobalBinding());
+				case HOISTED:
+					return resolved(new Expr.Hoisted(token(), expr()));
+				case GET:
+					return new Expr.Get(expr(), token());
+				case SET:
+					return new Expr.Set(expr(), token(), expr());
+				case INDEX:
+					return new Expr.Index(expr(), token(), expr());
+				case INDEX_SET:
+					return new Expr.IndexSet(expr(), token(), expr(), token(), expr());
+				case THIS:
+					return resolved(new Expr.This(token()));
+				case SUPER:
+					return resolved(new Expr.Super(token(), token()));
+				case GROUPING:
+					return new Expr.Grouping(expr());
+				case LITERAL:
+					return new Expr.Literal(value());
+				case ARRAY:
+					return new Expr.Array(token(), exprs());
+				case DICTIONARY:
+					return new Expr.Dictionary(token(), exprs(), exprs());
+				case LOGICAL:
+					return new Expr.Logical(expr(), token(), expr());
+				case VARIABLE:
+					return resolved(new Expr.Variable(token()));
+				case UNARY:
+					return new Expr.Unary(token(), expr());
+				default:
+					throw new IllegalStateException("Unknown expression tag " + tag + ".");
+			}
+		}
+
+		private Object value() {
+			byte tag = in.get();
+			switch (tag) {
+				case NIL_VALUE:
+					return null;
+				case TRUE_VALUE:
+					return true;
+				case FALSE_VALUE:
+					return false;
+				case NUMBER_VALUE:
+					return in.getDouble();
+				case STRING_VALUE:
+					return string();
+				default:
+					throw new IllegalStateException("Unknown literal tag " + tag + ".");
+			}
+		}
+
+		private Stmt stmt() {
+			byte tag = in.get();
+			switch (tag) {
+				case NULL:
+					return null;
+				case BREAK:
+					return new Stmt.Break(token());
+				case CONTINUE:
+					return new Stmt.Continue(token());
+				case BLOCK:
+					return new Stmt.Block(statements());
+				case EXPRESSION:
+					return new Stmt.Expression(expr());
+				case FUNCTION:
+					return new Stmt.Function(token(), tokens(), statements());
+				case CLASS:
+					return new Stmt.Class(token(), (Expr.Variable) expr(), functions());
+				case RETURN:
+					return new Stmt.Return(token(), expr());
+				case IF:
+					return new Stmt.If(expr(), stmt(), stmt());
+				case WHILE:
+					return new Stmt.While(expr(), stmt());
+				case VAR:
+					return new Stmt.Var(token(), expr());
+				case HOIST:
+					return new Stmt.Hoist(tokens(), stmt());
+				default:
+					throw new IllegalStateException("Unknown statement tag " + tag + ".");
+			}
+		}
+	}
+}
@@ -0,0 +1,475 @@
+package com.jcode.lox;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.jcode.lox.Expr.Array;
+import com.jcode.lox.Expr.Assign;
+import com.jcode.lox.Expr.Binary;
+import com.jcode.lox.Expr.Bound;
+import com.jcode.lox.Expr.Call;
+import com.jcode.lox.Expr.Dictionary;
+import com.jcode.lox.Expr.Get;
+import com.jcode.lox.Expr.GetThis;
+import com.jcode.lox.Expr.Grouping;
+import com.jcode.lox.Expr.Hoisted;
+import com.jcode.lox.Expr.Increment;
+import com.jcode.lox.Expr.Index;
+import com.jcode.lox.Expr.IndexSet;
+import com.jcode.lox.Expr.Inline;
+import com.jcode.lox.Expr.Invoke;
+import com.jcode.lox.Expr.Literal;
+import com.jcode.lox.Expr.LocalCompare;
+import com.jcode.lox.Expr.Logical;
+import com.jcode.lox.Expr.Negate;
+import com.jcode.lox.Expr.NumericBinary;
+import com.jcode.lox.Expr.Set;
+import com.jcode.lox.Expr.Super;
+import com.jcode.lox.Expr.Ternary;
+import com.jcode.lox.Expr.This;
+import com.jcode.lox.Expr.Unary;
+import com.jcode.lox.Expr.Variable;
+import com.jcode.lox.Stmt.Block;
+import com.jcode.lox.Stmt.Break;
+import com.jcode.lox.Stmt.Class;
+import com.jcode.lox.Stmt.Continue;
+import com.jcode.lox.Stmt.Expression;
+import com.jcode.lox.Stmt.Function;
+import com.jcode.lox.Stmt.Hoist;
+import com.jcode.lox.Stmt.If;
+import com.jcode.lox.Stmt.Return;
+import com.jcode.lox.Stmt.Var;
+import com.jcode.lox.Stmt.While;
+
+// Base for passes that rewrite a resolved program. Each visit returns the
+// node to use in place of the one visited, or null to remove a statement.
+// Nodes are only rebuilt when a child changes, and a rebuilt Assign takes
+// over the resolver depth of the node it replaces.
+class AstRewriter implements Expr.Visitor<Expr>, Stmt.Visitor<Stmt> {
+	protected final IntNodeTable locals;
+
+	// Statements this pass replaced, if asked to record them
+	private NodeTable<Stmt> replaced = null;
+
+	AstRewriter(IntNodeTable locals) {
+		this.locals = locals;
+	}
+
+	// Records each statement that's replaced by another, so the tiered
+	// interpreter can find what a function or loop became
+	AstRewriter tracking(NodeTable<Stmt> replaced) {
+		this.replaced = replaced;
+		return this;
+	}
+
+	List<Stmt> rewrite(List<Stmt> statements) {
+		return stmts(statements);
+	}
+
+	protected Expr expr(Expr expr) {
+		return expr == null ? null : expr.accept(this);
+	}
+
+	protected Stmt stmt(Stmt stmt) {
+		if (stmt == null)
+			return null;
+
+		Stmt rewritten = stmt.accept(this);
+		track(stmt, rewritten);
+		return rewritten;
+	}
+
+	private void track(Stmt stmt, Stmt rewritten) {
+		if (replaced != null && rewritten != null && rewritten != stmt) {
+			replaced.put(stmt, rewritten);
+		}
+	}
+
+	protected List<Expr> exprs(List<Expr> exprs) {
+		List<Expr> rewritten = null;
+		for (int i = 0; i < exprs.size(); i++) {
+			Expr expr = expr(exprs.get(i));
+			if (rewritten == null && expr != exprs.get(i)) {
+				rewritten = new ArrayList<>(exprs.subList(0, i));
+			}
+
+			if (rewritten != null) {
+				rewritten.add(expr);
+			}
+		}
+
+		return rewritten == null ? exprs : rewritten;
+	}
+
+	// Drops removed statements
+	protected List<Stmt> stmts(List<Stmt> stmts) {
+		List<Stmt> rewritten = null;
+		for (int i = 0; i < stmts.size(); i++) {
+			Stmt stmt = stmt(stmts.get(i));
+			if (rewritten == null && stmt != stmts.get(i)) {
+				rewritten = new ArrayList<>(stmts.subList(0, i));
+			}
+
+			if (rewritten != null && stmt != null) {
+				rewritten.add(stmt);
+			}
+		}
+
+		return rewritten == null ? stmts : rewritten;
+	}
+
+	// Where a statement is required, a removed one becomes an empty block
+	protected Stmt required(Stmt stmt) {
+		return stmt == null ? new Block(new ArrayList<>()) : stmt;
+	}
+
+	@Override
+	public Expr visitTernaryExpr(Ternary expr) {
+		Expr left = expr(expr.left);
+		Expr middle = expr(expr.middle);
+		Expr right = expr(expr.right);
+
+		if (left == expr.left && middle == expr.middle && right == expr.right)
+			return expr;
+
+		return new Ternary(left, expr.op1, middle, expr.op2, right);
+	}
+
+	@Override
+	public Expr visitAssignExpr(Assign expr) {
+		Expr value = expr(expr.value);
+		if (value == expr.value)
+			return expr;
+
+		Assign assign = new Assign(expr.name, value);
+		int depth = locals.get(expr);
+		if (depth != IntNodeTable.MISSING) {
+			locals.put(assign, depth);
+		}
+
+		return assign;
+	}
+
+	// Fused nodes other than Invoke only hold variables and constants
+	@Override
+	public Expr visitIncrementExpr(Increment expr) {
+		return expr;
+	}
+
+	@Override
+	public Expr visitBinaryExpr(Binary expr) {
+		Expr left = expr(expr.left);
+		Expr right = expr(expr.right);
+
+		if (left == expr.left && right == expr.right)
+			return expr;
+
+		return new Binary(left, expr.operator, right);
+	}
+
+	@Override
+	public Expr visitNumericBinaryExpr(NumericBinary expr) {
+		Expr left = expr(expr.left);
+		Expr right = expr(expr.right);
+
+		if (left == expr.left && right == expr.right)
+			return expr;
+
+		return new NumericBinary(left, expr.operator, right);
+	}
+
+	@Override
+	public Expr visitLocalCompareExpr(LocalCompare expr) {
+		return expr;
+	}
+
+	@Override
+	public Expr visitCallExpr(Call expr) {
+		Expr callee = expr(expr.callee);
+		List<Expr> arguments = exprs(expr.arguments);
+		if (callee == expr.callee && arguments == expr.arguments)
+			return expr;
+
+		return new Call(callee, expr.paren, arguments);
+	}
+
+	@Override
+	public Expr visitInvokeExpr(Invoke expr) {
+		Expr object = expr(expr.object);
+		List<Expr> arguments = exprs(expr.arguments);
+		if (object == expr.object && arguments == expr.arguments)
+			return expr;
+
+		return new Invoke(object, expr.name, expr.paren, arguments);
+	}
+
+	// A pass that replaces the callee turns the call back into a plain one
+	@Override
+	public Expr visitBoundExpr(Bound expr) {
+		Expr callee = expr(expr.callee);
+		List<Expr> arguments = exprs(expr.arguments);
+		if (callee != expr.callee)
+			return new Call(callee, expr.paren, arguments);
+
+		if (arguments == expr.arguments)
+			return expr;
+
+		return new Bound(expr.callee, expr.paren, arguments, expr.binding);
+	}
+
+	@Override
+	public Expr visitInlineExpr(Inline expr) {
+		List<Expr> arguments = exprs(expr.arguments);
+		Expr body = expr(expr.body);
+		if (arguments == expr.arguments && body == expr.body)
+			return expr;
+
+		return new Inline(expr.name, expr.paren, expr.params, arguments, body, expr.binding);
+	}
+
+	@Override
+	public Expr visitHoistedExpr(Hoisted expr) {
+		Expr expression = expr(expr.expression);
+		if (expression == expr.expression)
+			return expr;
+
+		Hoisted hoisted = new Hoisted(expr.slot, expression);
+		int depth = locals.get(expr);
+		if (depth != IntNodeTable.MISSING) {
+			locals.put(hoisted, depth);
+		}
+
+		return hoisted;
+	}
+
+	@Override
+	public Expr visitGetExpr(Get expr) {
+		Expr object = expr(expr.object);
+		if (object == expr.object)
+			return expr;
+
+		return new Get(object, expr.name);
+	}
+
+	@Override
+	public Expr visitGetThisExpr(GetThis expr) {
+		return expr;
+	}
+
+	@Override
+	public Expr visitSetExpr(Set expr) {
+		Expr object = expr(expr.object);
+		Expr value = expr(expr.value);
+		if (object == expr.object && value == expr.value)
+			return expr;
+
+		return new Set(object, expr.name, value);
+	}
+
+	@Override
+	public Expr visitIndexExpr(Index expr) {
+		Expr object = expr(expr.object);
+		Expr index = expr(expr.index);
+		if (object == expr.object && index == expr.index)
+			return expr;
+
+		return new Index(object, expr.bracket, index);
+	}
+
+	@Override
+	public Expr visitIndexSetExpr(IndexSet expr) {
+		Expr object = expr(expr.object);
+		Expr index = expr(expr.index);
+		Expr value = expr(expr.value);
+		if (object == expr.object && index == expr.index && value == expr.value)
+			return expr;
+
+		return new IndexSet(object, expr.bracket, index, expr.operator, value);
+	}
+
+	@Override
+	public Expr visitThisExpr(This expr) {
+		return expr;
+	}
+
+	@Override
+	public Expr visitSuperExpr(Super expr) {
+		return expr;
+	}
+
+	@Override
+	public Expr visitGroupingExpr(Grouping expr) {
+		Expr expression = expr(expr.expression);
+		if (expression == expr.expression)
+			return expr;
+
+		return new Grouping(expression);
+	}
+
+	@Override
+	public Expr visitLiteralExpr(Literal expr) {
+		return expr;
+	}
+
+	@Override
+	public Expr visitArrayExpr(Array expr) {
+		List<Expr> elements = exprs(expr.elements);
+		if (elements == expr.elements)
+			return expr;
+
+		return new Array(expr.bracket, elements);
+	}
+
+	@Override
+	public Expr visitDictionaryExpr(Dictionary expr) {
+		List<Expr> keys = exprs(expr.keys);
+		List<Expr> values = exprs(expr.values);
+		if (keys == expr.keys && values == expr.values)
+			return expr;
+
+		return new Dictionary(expr.brace, keys, values);
+	}
+
+	@Override
+	public Expr visitLogicalExpr(Logical expr) {
+		Expr left = expr(expr.left);
+		Expr right = expr(expr.right);
+
+		if (left == expr.left && right == expr.right)
+			return expr;
+
+		return new Logical(left, expr.operator, right);
+	}
+
+	@Override
+	public Expr visitVariableExpr(Variable expr) {
+		return expr;
+	}
+
+	@Override
+	public Expr visitUnaryExpr(Unary expr) {
+		Expr right = expr(expr.right);
+
+		if (right == expr.right)
+			return expr;
+
+		return new Unary(expr.operator, right);
+	}
+
+	@Override
+	public Expr visitNegateExpr(Negate expr) {
+		Expr right = expr(expr.right);
+
+		if (right == expr.right)
+			return expr;
+
+		return new Negate(expr.operator, right);
+	}
+
+	@Override
+	public Stmt visitBreakStmt(Break stmt) {
+		return stmt;
+	}
+
+	@Override
+	public Stmt visitContinueStmt(Continue stmt) {
+		return stmt;
+	}
+
+	@Override
+	public Stmt visitBlockStmt(Block stmt) {
+		List<Stmt> statements = stmts(stmt.statements);
+		if (statements == stmt.statements)
+			return stmt;
+
+		return new Block(statements);
+	}
+
+	@Override
+	public Stmt visitExpressionStmt(Expression stmt) {
+		Expr expression = expr(stmt.expression);
+		if (expression == stmt.expression)
+			return stmt;
+
+		return new Expression(expression);
+	}
+
+	@Override
+	public Stmt visitFunctionStmt(Function stmt) {
+		List<Stmt> body = stmts(stmt.body);
+		if (body == stmt.body)
+			return stmt;
+
+		return new Function(stmt.name, stmt.params, body);
+	}
+
+	@Override
+	public Stmt visitClassStmt(Class stmt) {
+		List<Function> methods = null;
+		for (int i = 0; i < stmt.methods.size(); i++) {
+			Function method = (Function) visitFunctionStmt(stmt.methods.get(i));
+			track(stmt.methods.get(i), method);
+			if (methods == null && method != stmt.methods.get(i)) {
+				methods = new ArrayList<>(stmt.methods.subList(0, i));
+			}
+
+			if (methods != null) {
+				methods.add(method);
+			}
+		}
+
+		if (methods == null)
+			return stmt;
+
+		return new Class(stmt.name, stmt.superclass, methods);
+	}
+
+	@Override
+	public Stmt visitReturnStmt(Return stmt) {
+		Expr value = expr(stmt.value);
+		if (value == stmt.value)
+			return stmt;
+
+		return new Return(stmt.keyword, value);
+	}
+
+	@Override
+	public Stmt visitIfStmt(If stmt) {
+		Expr condition = expr(stmt.condition);
+		Stmt thenBranch = stmt(stmt.thenBranch);
+		Stmt elseBranch = stmt(stmt.elseBranch);
+
+		if (condition == stmt.condition && thenBranch == stmt.thenBranch && elseBranch == stmt.elseBranch)
+			return stmt;
+
+		return new If(condition, required(thenBranch), elseBranch);
+	}
+
+	@Override
+	public Stmt visitWhileStmt(While stmt) {
+		Expr condition = expr(stmt.condition);
+		Stmt body = required(stmt(stmt.body));
+		if (condition == stmt.condition && body == stmt.body)
+			return stmt;
+
+		return new While(condition, body);
+	}
+
+	@Override
+	public Stmt visitHoistStmt(Hoist stmt) {
+		Stmt loop = required(stmt(stmt.loop));
+		if (loop == stmt.loop)
+			return stmt;
+
+		return new Hoist(stmt.slots, loop);
+	}
+
+	@Override
+	public Stmt visitVarStmt(Var stmt) {
+		Expr initialiser = expr(stmt.initialiser);
+		if (initialiser == stmt.initialiser)
+			return stmt;
+
+		return new Var(stmt.name, initialiser);
+	}
+}
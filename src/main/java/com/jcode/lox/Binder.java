@@ -0,0 +1,96 @@
+package com.jcode.lox;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.jcode.lox.Expr.Bound;
+import com.jcode.lox.Expr.Call;
+import com.jcode.lox.Expr.Variable;
+import com.jcode.lox.Stmt.Class;
+import com.jcode.lox.Stmt.Function;
+
+// Binds calls to global functions and classes that are declared once at the
+// top level and never assigned to. Their arity can't change, so a call with
+// the wrong number of arguments is reported here rather than when it runs,
+// and a bound call skips the lookup and checks on every run after its first.
+class Binder extends AstRewriter {
+	private final ErrorReporter reporter;
+	private final Map<Symbol, Integer> arities = new HashMap<>();
+
+	Binder(IntNodeTable locals, ErrorReporter reporter) {
+		super(locals);
+		this.reporter = reporter;
+	}
+
+	@Override
+	List<Stmt> rewrite(List<Stmt> statements) {
+		GlobalUses globals = new GlobalUses(locals);
+		globals.rewrite(statements);
+
+		Map<Symbol, Class> classes = new HashMap<>();
+		for (Stmt stmt : statements) {
+			if (stmt instanceof Function) {
+				Function function = (Function) stmt;
+				if (globals.isConstant(function.name.symbol)) {
+					arities.put(function.name.symbol, function.params.size());
+				}
+			} else if (stmt instanceof Class) {
+				Class klass = (Class) stmt;
+				if (globals.isConstant(klass.name.symbol)) {
+					classes.put(klass.name.symbol, klass);
+				}
+			}
+		}
+
+		for (Class klass : classes.values()) {
+			Integer arity = arity(klass, classes);
+			if (arity != null) {
+				arities.put(klass.name.symbol, arity);
+			}
+		}
+
+		return stmts(statements);
+	}
+
+	// The arity of the class's initialiser, or null if it comes from a
+	// superclass that isn't known here
+	private static Integer arity(Class klass, Map<Symbol, Class> classes) {
+		for (int depth = 0; depth <= classes.size(); depth++) {
+			for (Function method : klass.methods) {
+				if (method.name.symbol == Symbol.INIT)
+					return method.params.size();
+			}
+
+			if (klass.superclass == null)
+				return 0;
+
+			klass = classes.get(klass.superclass.name.symbol);
+			if (klass == null)
+				return null;
+		}
+
+		// Inherits from itself, which fails when it's declared
+		return null;
+	}
+
+	@Override
+	public Expr visitCallExpr(Call expr) {
+		List<Expr> arguments = exprs(expr.arguments);
+
+		if (expr.callee instanceof Variable && !locals.contains(expr.callee)) {
+			Integer arity = arities.get(((Variable) expr.callee).name.symbol);
+			if (arity != null) {
+				if (arity == arguments.size())
+					return new Bound((Variable) expr.callee, expr.paren, arguments, new GlobalBinding());
+
+				reporter.error(expr.paren, "Expected " + arity + " arguments, but got " + arguments.size() + ".");
+			}
+		}
+
+		if (arguments == expr.arguments)
+			return expr;
+
+		return new Call(expr.callee, expr.paren, arguments);
+	}
+}
@@ -0,0 +1,87 @@
+package com.jcode.lox;
+
+import java.util.HashSet;
+import java.util.List;
+
+import com.jcode.lox.Expr.Assign;
+import com.jcode.lox.Expr.Increment;
+import com.jcode.lox.Expr.Inline;
+import com.jcode.lox.Stmt.Block;
+import com.jcode.lox.Stmt.Function;
+
+// Finds the names functions assign to outside their own scopes. A variable
+// with one of these names can change whenever a function is called.
+class Captures extends AstRewriter {
+	private final java.util.Set<Symbol> names = new HashSet<>();
+
+	// Scopes between here and the innermost function's closure, or 0
+	// outside any function
+	private int inner = 0;
+
+	private Captures(IntNodeTable locals) {
+		super(locals);
+	}
+
+	static java.util.Set<Symbol> find(IntNodeTable locals, List<Stmt> statements) {
+		Captures captures = new Captures(locals);
+		captures.stmts(statements);
+		return captures.names;
+	}
+
+	@Override
+	public Stmt visitBlockStmt(Block stmt) {
+		if (inner == 0)
+			return super.visitBlockStmt(stmt);
+
+		inner++;
+		try {
+			return super.visitBlockStmt(stmt);
+		} finally {
+			inner--;
+		}
+	}
+
+	@Override
+	public Stmt visitFunctionStmt(Function stmt) {
+		int enclosing = inner;
+		inner = 1;
+		try {
+			return super.visitFunctionStmt(stmt);
+		} finally {
+			inner = enclosing;
+		}
+	}
+
+	@Override
+	public Expr visitInlineExpr(Inline expr) {
+		exprs(expr.arguments);
+
+		int enclosing = inner;
+		inner = 1;
+		try {
+			expr(expr.body);
+			return expr;
+		} finally {
+			inner = enclosing;
+		}
+	}
+
+	@Override
+	public Expr visitAssignExpr(Assign expr) {
+		assigned(expr, expr.name);
+		return super.visitAssignExpr(expr);
+	}
+
+	@Override
+	public Expr visitIncrementExpr(Increment expr) {
+		assigned(expr, expr.name);
+		return expr;
+	}
+
+	private void assigned(Expr expr, Token name) {
+		int distance = locals.get(expr);
+		if (inner > 0 && (distance == IntNodeTable.MISSING || distance >= inner)) {
+			names.add(name.symbol);
+		}
+	}
+}
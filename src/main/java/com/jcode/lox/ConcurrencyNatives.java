@@ -0,0 +1,224 @@
+package com.jcode.lox;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+
+class ConcurrencyNatives {
+	// select() returns an instance of this, with the channel that was ready
+	// and the value received from it
+	private static final LoxClass SELECTION = new LoxClass("Selection", null, new HashMap<>());
+	private static final Token CHANNEL = new Token(TokenType.IDENTIFIER, Symbol.intern("channel"), 0);
+	private static final Token VALUE = new Token(TokenType.IDENTIFIER, Symbol.intern("value"), 0);
+
+	static void define(Environment globals) {
+		globals.define("spawn", new LoxCallable() {
+			@Override
+			public int arity() {
+				return 1;
+			}
+
+			@Override
+			public Object call(Interpreter interpreter, List<Object> args) {
+				Object function = args.get(0);
+				if (!(function instanceof LoxCallable) || ((LoxCallable) function).arity() != 0) {
+					throw new NativeFnError("Can only call 'spawn()' on functions with no parameters.");
+				}
+
+				return new LoxTask(interpreter, (LoxCallable) function);
+			}
+
+			@Override
+			public String toString() {
+				return "<native fn>";
+			}
+		});
+
+		globals.define("join", new LoxCallable() {
+			@Override
+			public int arity() {
+				return 1;
+			}
+
+			@Override
+			public Object call(Interpreter interpreter, List<Object> args) {
+				Object task = args.get(0);
+				if (!(task instanceof LoxTask)) {
+					throw new NativeFnError("Can only call 'join()' on tasks.");
+				}
+
+				return ((LoxTask) task).join();
+			}
+
+			@Override
+			public String toString() {
+				return "<native fn>";
+			}
+		});
+
+		globals.define("channel", new LoxCallable() {
+			@Override
+			public int arity() {
+				return 1;
+			}
+
+			@Override
+			public Object call(Interpreter interpreter, List<Object> args) {
+				return new LoxChannel(Interpreter.countArg("channel", args.get(0)));
+			}
+
+			@Override
+			public String toString() {
+				return "<native fn>";
+			}
+		});
+
+		globals.define("send", new LoxCallable() {
+			@Override
+			public int arity() {
+				return 2;
+			}
+
+			@Override
+			public Object call(Interpreter interpreter, List<Object> args) {
+				try {
+					channelArg("send", args.get(0)).send(args.get(1));
+				} catch (InterruptedException e) {
+					throw interrupted();
+				}
+
+				return null;
+			}
+
+			@Override
+			public String toString() {
+				return "<native fn>";
+			}
+		});
+
+		globals.define("receive", new LoxCallable() {
+			@Override
+			public int arity() {
+				return 1;
+			}
+
+			@Override
+			public Object call(Interpreter interpreter, List<Object> args) {
+				try {
+					return channelArg("receive", args.get(0)).receive();
+				} catch (InterruptedException e) {
+					throw interrupted();
+				}
+			}
+
+			@Override
+			public String toString() {
+				return "<native fn>";
+			}
+		});
+
+		globals.define("select", new LoxCallable() {
+			@Override
+			public int arity() {
+				return 2;
+			}
+
+			@Override
+			public Object call(Interpreter interpreter, List<Object> args) {
+				LoxChannel first = channelArg("select", args.get(0));
+				LoxChannel second = channelArg("select", args.get(1));
+
+				try {
+					return select(first, second);
+				} catch (InterruptedException e) {
+					throw interrupted();
+				}
+			}
+
+			@Override
+			public String toString() {
+				return "<native fn>";
+			}
+		});
+
+		globals.define("sleep", new LoxCallable() {
+			@Override
+			public int arity() {
+				return 1;
+			}
+
+			@Override
+			public Object call(Interpreter interpreter, List<Object> args) {
+				Object seconds = args.get(0);
+				if (!(seconds instanceof Double) || (double) seconds < 0) {
+					throw new NativeFnError("Argument to 'sleep()' must be a non-negative number.");
+				}
+
+				try {
+					Thread.sleep((long) ((double) seconds * 1000));
+				} catch (InterruptedException e) {
+					throw interrupted();
+				}
+
+				return null;
+			}
+
+			@Override
+			public String toString() {
+				return "<native fn>";
+			}
+		});
+	}
+
+	// Receives from whichever channel has a value first. The semaphore is
+	// registered before polling, so a send between a poll and the wait still
+	// wakes this thread.
+	private static LoxInstance select(LoxChannel first, LoxChannel second) throws InterruptedException {
+		Semaphore ready = new Semaphore(0);
+		first.watch(ready);
+		second.watch(ready);
+
+		try {
+			boolean firstTurn = true;
+			while (true) {
+				// Alternate which channel is tried first so neither is starved
+				LoxChannel a = firstTurn ? first : second;
+				LoxChannel b = firstTurn ? second : first;
+				firstTurn = !firstTurn;
+
+				Object value = a.poll();
+				if (value != LoxChannel.EMPTY)
+					return selection(a, value);
+
+				value = b.poll();
+				if (value != LoxChannel.EMPTY)
+					return selection(b, value);
+
+				ready.acquire();
+			}
+		} finally {
+			first.unwatch(ready);
+			second.unwatch(ready);
+		}
+	}
+
+	private static LoxInstance selection(LoxChannel channel, Object value) {
+		LoxInstance selection = new LoxInstance(SELECTION);
+		selection.set(CHANNEL, channel);
+		selection.set(VALUE, value);
+		return selection;
+	}
+
+	private static LoxChannel channelArg(String name, Object arg) {
+		if (!(arg instanceof LoxChannel)) {
+			throw new NativeFnError("Can only call '" + name + "()' on channels.");
+		}
+
+		return (LoxChannel) arg;
+	}
+
+	private static NativeFnError interrupted() {
+		Thread.currentThread().interrupt();
+		return new NativeFnError("Interrupted while waiting.");
+	}
+}
@@ -1,14 +1,23 @@
 package com.jcode.lox;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class Environment {
 	public final Environment enclosing;
-	private final Map<String, Object> values = new HashMap<>();
-	private final Set<String> unassigned = new HashSet<>();
+	private Map<Symbol, Object> values = new HashMap<>();
+	private Set<Symbol> unassigned = new HashSet<>();
+	private boolean shared = false;
+
+	// Changes whenever a callable is replaced, see GlobalBinding. Atomic so
+	// tasks replacing callables at once each get a version of their own. A
+	// binding takes the version before looking its callable up, so a lookup
+	// between a replacement and its bump is dropped at the next check.
+	private final AtomicInteger version = new AtomicInteger();
 
 	public Environment() {
 		enclosing = null;
@@ -19,12 +28,12 @@ public class Environment {
 	}
 
 	Object get(Token name) {
-		if (unassigned.contains(name.lexeme)) {
+		if (unassigned.contains(name.symbol)) {
 			throw new RuntimeError(name, "Unassigned variable '" + name.lexeme + "'.");
 		}
 
-		if (values.containsKey(name.lexeme)) {
-			return values.get(name.lexeme);
+		if (values.containsKey(name.symbol)) {
+			return values.get(name.symbol);
 		}
 
 		if (enclosing != null)
@@ -34,16 +43,27 @@ public class Environment {
 	}
 
 	void define(String name, Object value) {
-		values.put(name, value);
+		define(Symbol.intern(name), value);
+	}
+
+	void define(Symbol name, Object value) {
+		if (values.put(name, value) instanceof LoxCallable) {
+			version.incrementAndGet();
+		}
 
 		if (value == null)
 			unassigned.add(name);
 	}
 
 	Object assign(Token name, Object value) {
-		if (values.containsKey(name.lexeme)) {
-			unassigned.remove(name.lexeme);
-			return values.put(name.lexeme, value);
+		if (values.containsKey(name.symbol)) {
+			unassigned.remove(name.symbol);
+			Object previous = values.put(name.symbol, value);
+			if (previous instanceof LoxCallable) {
+				version.incrementAndGet();
+			}
+
+			return previous;
 		}
 
 		if (enclosing != null)
@@ -52,12 +72,27 @@ public class Environment {
 		throw new RuntimeError(name, "Undefined variable '" + name.lexeme + "'.");
 	}
 
-	Object getAt(int distance, String name) {
+	// Called on the globals before the first task starts, so scripts that
+	// never spawn don't pay for locking
+	synchronized void share() {
+		if (shared)
+			return;
+
+		values = Collections.synchronizedMap(values);
+		unassigned = Collections.synchronizedSet(unassigned);
+		shared = true;
+	}
+
+	int version() {
+		return version.get();
+	}
+
+	Object getAt(int distance, Symbol name) {
 		return ancestor(distance).values.get(name);
 	}
 
 	Object assignAt(int distance, Token name, Object value) {
-		return ancestor(distance).values.put(name.lexeme, value);
+		return ancestor(distance).values.put(name.symbol, value);
 	}
 
 	Environment ancestor(int distance) {
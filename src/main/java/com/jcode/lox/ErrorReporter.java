@@ -0,0 +1,51 @@
+package com.jcode.lox;
+
+import java.io.PrintStream;
+
+// Collects the errors from one run, so separate runs don't share state
+class ErrorReporter {
+	private final PrintStream err;
+
+	boolean hadError = false;
+	boolean hadRuntimeError = false;
+
+	ErrorReporter(PrintStream err) {
+		this.err = err;
+	}
+
+	void error(int line, String message) {
+		report(line, "", message);
+	}
+
+	void error(Token token, String message) {
+		if (token.type == TokenType.EOF) {
+			report(token.line, " at end", message);
+		} else {
+			report(token.line, " at '" + token.lexeme + "'", message);
+		}
+	}
+
+	private void report(int line, String where, String message) {
+		err.println("[line " + line + "] Error" + where + ": " + message);
+		hadError = true;
+	}
+
+	void runtimeError(RuntimeError error) {
+		err.println(error.getMessage() + "\n[line " + error.token.line + "]");
+		hadRuntimeError = true;
+	}
+
+	void nativeFnError(NativeFnError error) {
+		err.println(error.getMessage());
+		hadRuntimeError = true;
+	}
+
+	// Matches the exit codes of jlox: 65 for compile errors, 70 for runtime errors
+	int exitCode() {
+		if (hadError)
+			return 65;
+		if (hadRuntimeError)
+			return 70;
+		return 0;
+	}
+}
@@ -2,25 +2,72 @@ package com.jcode.lox;
 
 import java.util.List;
 
-abstract class Expr {
+abstract class Expr extends Node {
 	interface Visitor<R> {
 		R visitTernaryExpr(Ternary expr);
 		R visitAssignExpr(Assign expr);
+		R visitIncrementExpr(Increment expr);
 		R visitBinaryExpr(Binary expr);
+		R visitNumericBinaryExpr(NumericBinary expr);
+		R visitLocalCompareExpr(LocalCompare expr);
 		R visitCallExpr(Call expr);
+		R visitInvokeExpr(Invoke expr);
+		R visitBoundExpr(Bound expr);
+		R visitInlineExpr(Inline expr);
+		R visitHoistedExpr(Hoisted expr);
 		R visitGetExpr(Get expr);
+		R visitGetThisExpr(GetThis expr);
 		R visitSetExpr(Set expr);
+		R visitIndexExpr(Index expr);
+		R visitIndexSetExpr(IndexSet expr);
 		R visitThisExpr(This expr);
 		R visitSuperExpr(Super expr);
 		R visitGroupingExpr(Grouping expr);
 		R visitLiteralExpr(Literal expr);
+		R visitArrayExpr(Array expr);
+		R visitDictionaryExpr(Dictionary expr);
 		R visitLogicalExpr(Logical expr);
 		R visitVariableExpr(Variable expr);
 		R visitUnaryExpr(Unary expr);
+		R visitNegateExpr(Negate expr);
+	}
+
+	static final int TERNARY = 0;
+	static final int ASSIGN = 1;
+	static final int INCREMENT = 2;
+	static final int BINARY = 3;
+	static final int NUMERIC_BINARY = 4;
+	static final int LOCAL_COMPARE = 5;
+	static final int CALL = 6;
+	static final int INVOKE = 7;
+	static final int BOUND = 8;
+	static final int INLINE = 9;
+	static final int HOISTED = 10;
+	static final int GET = 11;
+	static final int GET_THIS = 12;
+	static final int SET = 13;
+	static final int INDEX = 14;
+	static final int INDEX_SET = 15;
+	static final int THIS = 16;
+	static final int SUPER = 17;
+	static final int GROUPING = 18;
+	static final int LITERAL = 19;
+	static final int ARRAY = 20;
+	static final int DICTIONARY = 21;
+	static final int LOGICAL = 22;
+	static final int VARIABLE = 23;
+	static final int UNARY = 24;
+	static final int NEGATE = 25;
+
+	final int kind;
+
+	Expr(int kind) {
+		this.kind = kind;
 	}
 
 	static class Ternary extends Expr {
 		Ternary(Expr left, Token op1, Expr middle, Token op2, Expr right) {
+			super(TERNARY);
 			this.left = left;
 			this.op1 = op1;
 			this.middle = middle;
@@ -42,6 +89,7 @@ abstract class Expr {
 
 	static class Assign extends Expr {
 		Assign(Token name, Expr value) {
+			super(ASSIGN);
 			this.name = name;
 			this.value = value;
 		}
@@ -55,8 +103,27 @@ abstract class Expr {
 		final Expr value;
 	}
 
+	static class Increment extends Expr {
+		Increment(Token name, Token operator, double delta) {
+			super(INCREMENT);
+			this.name = name;
+			this.operator = operator;
+			this.delta = delta;
+		}
+
+		@Override
+		<R> R accept(Visitor<R> visitor) {
+			return visitor.visitIncrementExpr(this);
+		}
+
+		final Token name;
+		final Token operator;
+		final double delta;
+	}
+
 	static class Binary extends Expr {
 		Binary(Expr left, Token operator, Expr right) {
+			super(BINARY);
 			this.left = left;
 			this.operator = operator;
 			this.right = right;
@@ -72,8 +139,45 @@ abstract class Expr {
 		final Expr right;
 	}
 
+	static class NumericBinary extends Expr {
+		NumericBinary(Expr left, Token operator, Expr right) {
+			super(NUMERIC_BINARY);
+			this.left = left;
+			this.operator = operator;
+			this.right = right;
+		}
+
+		@Override
+		<R> R accept(Visitor<R> visitor) {
+			return visitor.visitNumericBinaryExpr(this);
+		}
+
+		final Expr left;
+		final Token operator;
+		final Expr right;
+	}
+
+	static class LocalCompare extends Expr {
+		LocalCompare(Variable left, Token operator, Variable right) {
+			super(LOCAL_COMPARE);
+			this.left = left;
+			this.operator = operator;
+			this.right = right;
+		}
+
+		@Override
+		<R> R accept(Visitor<R> visitor) {
+			return visitor.visitLocalCompareExpr(this);
+		}
+
+		final Variable left;
+		final Token operator;
+		final Variable right;
+	}
+
 	static class Call extends Expr {
 		Call(Expr callee, Token paren, List<Expr> arguments) {
+			super(CALL);
 			this.callee = callee;
 			this.paren = paren;
 			this.arguments = arguments;
@@ -89,8 +193,89 @@ abstract class Expr {
 		final List<Expr> arguments;
 	}
 
+	static class Invoke extends Expr {
+		Invoke(Expr object, Token name, Token paren, List<Expr> arguments) {
+			super(INVOKE);
+			this.object = object;
+			this.name = name;
+			this.paren = paren;
+			this.arguments = arguments;
+		}
+
+		@Override
+		<R> R accept(Visitor<R> visitor) {
+			return visitor.visitInvokeExpr(this);
+		}
+
+		final Expr object;
+		final Token name;
+		final Token paren;
+		final List<Expr> arguments;
+	}
+
+	static class Bound extends Expr {
+		Bound(Variable callee, Token paren, List<Expr> arguments, GlobalBinding binding) {
+			super(BOUND);
+			this.callee = callee;
+			this.paren = paren;
+			this.arguments = arguments;
+			this.binding = binding;
+		}
+
+		@Override
+		<R> R accept(Visitor<R> visitor) {
+			return visitor.visitBoundExpr(this);
+		}
+
+		final Variable callee;
+		final Token paren;
+		final List<Expr> arguments;
+		final GlobalBinding binding;
+	}
+
+	static class Inline extends Expr {
+		Inline(Token name, Token paren, List<Token> params, List<Expr> arguments, Expr body, GlobalBinding binding) {
+			super(INLINE);
+			this.name = name;
+			this.paren = paren;
+			this.params = params;
+			this.arguments = arguments;
+			this.body = body;
+			this.binding = binding;
+		}
+
+		@Override
+		<R> R accept(Visitor<R> visitor) {
+			return visitor.visitInlineExpr(this);
+		}
+
+		final Token name;
+		final Token paren;
+		final List<Token> params;
+		final List<Expr> arguments;
+		final Expr body;
+		final GlobalBinding binding;
+	}
+
+	static class Hoisted extends Expr {
+		Hoisted(Token slot, Expr expression) {
+			super(HOISTED);
+			this.slot = slot;
+			this.expression = expression;
+		}
+
+		@Override
+		<R> R accept(Visitor<R> visitor) {
+			return visitor.visitHoistedExpr(this);
+		}
+
+		final Token slot;
+		final Expr expression;
+	}
+
 	static class Get extends Expr {
 		Get(Expr object, Token name) {
+			super(GET);
 			this.object = object;
 			this.name = name;
 		}
@@ -104,8 +289,25 @@ abstract class Expr {
 		final Token name;
 	}
 
+	static class GetThis extends Expr {
+		GetThis(This object, Token name) {
+			super(GET_THIS);
+			this.object = object;
+			this.name = name;
+		}
+
+		@Override
+		<R> R accept(Visitor<R> visitor) {
+			return visitor.visitGetThisExpr(this);
+		}
+
+		final This object;
+		final Token name;
+	}
+
 	static class Set extends Expr {
 		Set(Expr object, Token name, Expr value) {
+			super(SET);
 			this.object = object;
 			this.name = name;
 			this.value = value;
@@ -121,8 +323,49 @@ abstract class Expr {
 		final Expr value;
 	}
 
+	static class Index extends Expr {
+		Index(Expr object, Token bracket, Expr index) {
+			super(INDEX);
+			this.object = object;
+			this.bracket = bracket;
+			this.index = index;
+		}
+
+		@Override
+		<R> R accept(Visitor<R> visitor) {
+			return visitor.visitIndexExpr(this);
+		}
+
+		final Expr object;
+		final Token bracket;
+		final Expr index;
+	}
+
+	static class IndexSet extends Expr {
+		IndexSet(Expr object, Token bracket, Expr index, Token operator, Expr value) {
+			super(INDEX_SET);
+			this.object = object;
+			this.bracket = bracket;
+			this.index = index;
+			this.operator = operator;
+			this.value = value;
+		}
+
+		@Override
+		<R> R accept(Visitor<R> visitor) {
+			return visitor.visitIndexSetExpr(this);
+		}
+
+		final Expr object;
+		final Token bracket;
+		final Expr index;
+		final Token operator;
+		final Expr value;
+	}
+
 	static class This extends Expr {
 		This(Token keyword) {
+			super(THIS);
 			this.keyword = keyword;
 		}
 
@@ -136,6 +379,7 @@ abstract class Expr {
 
 	static class Super extends Expr {
 		Super(Token keyword, Token method) {
+			super(SUPER);
 			this.keyword = keyword;
 			this.method = method;
 		}
@@ -151,6 +395,7 @@ abstract class Expr {
 
 	static class Grouping extends Expr {
 		Grouping(Expr expression) {
+			super(GROUPING);
 			this.expression = expression;
 		}
 
@@ -164,6 +409,7 @@ abstract class Expr {
 
 	static class Literal extends Expr {
 		Literal(Object value) {
+			super(LITERAL);
 			this.value = value;
 		}
 
@@ -175,8 +421,43 @@ abstract class Expr {
 		final Object value;
 	}
 
+	static class Array extends Expr {
+		Array(Token bracket, List<Expr> elements) {
+			super(ARRAY);
+			this.bracket = bracket;
+			this.elements = elements;
+		}
+
+		@Override
+		<R> R accept(Visitor<R> visitor) {
+			return visitor.visitArrayExpr(this);
+		}
+
+		final Token bracket;
+		final List<Expr> elements;
+	}
+
+	static class Dictionary extends Expr {
+		Dictionary(Token brace, List<Expr> keys, List<Expr> values) {
+			super(DICTIONARY);
+			this.brace = brace;
+			this.keys = keys;
+			this.values = values;
+		}
+
+		@Override
+		<R> R accept(Visitor<R> visitor) {
+			return visitor.visitDictionaryExpr(this);
+		}
+
+		final Token brace;
+		final List<Expr> keys;
+		final List<Expr> values;
+	}
+
 	static class Logical extends Expr {
 		Logical(Expr left, Token operator, Expr right) {
+			super(LOGICAL);
 			this.left = left;
 			this.operator = operator;
 			this.right = right;
@@ -194,6 +475,7 @@ abstract class Expr {
 
 	static class Variable extends Expr {
 		Variable(Token name) {
+			super(VARIABLE);
 			this.name = name;
 		}
 
@@ -207,6 +489,7 @@ abstract class Expr {
 
 	static class Unary extends Expr {
 		Unary(Token operator, Expr right) {
+			super(UNARY);
 			this.operator = operator;
 			this.right = right;
 		}
@@ -220,5 +503,21 @@ abstract class Expr {
 		final Expr right;
 	}
 
+	static class Negate extends Expr {
+		Negate(Token operator, Expr right) {
+			super(NEGATE);
+			this.operator = operator;
+			this.right = right;
+		}
+
+		@Override
+		<R> R accept(Visitor<R> visitor) {
+			return visitor.visitNegateExpr(this);
+		}
+
+		final Token operator;
+		final Expr right;
+	}
+
 	abstract <R> R accept(Visitor<R> visitor);
 }
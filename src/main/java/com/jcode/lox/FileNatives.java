@@ -0,0 +1,123 @@
+package com.jcode.lox;
+
+import java.io.IOException;
+import java.util.List;
+
+class FileNatives {
+	static void define(Environment globals) {
+		globals.define("openFile", new LoxCallable() {
+			@Override
+			public int arity() {
+				return 1;
+			}
+
+			@Override
+			public Object call(Interpreter interpreter, List<Object> args) {
+				Object path = args.get(0);
+				if (!(path instanceof String)) {
+					throw new NativeFnError("Can only call 'openFile()' on strings.");
+				}
+
+				try {
+					return new LoxFile((String) path);
+				} catch (IOException e) {
+					throw new NativeFnError("Could not open file '" + path + "'.");
+				}
+			}
+
+			@Override
+			public String toString() {
+				return "<native fn>";
+			}
+		});
+
+		globals.define("readLine", new LoxCallable() {
+			@Override
+			public int arity() {
+				return 1;
+			}
+
+			@Override
+			public Object call(Interpreter interpreter, List<Object> args) {
+				return fileArg("readLine", args.get(0)).input().readLine();
+			}
+
+			@Override
+			public String toString() {
+				return "<native fn>";
+			}
+		});
+
+		globals.define("readChunk", new LoxCallable() {
+			@Override
+			public int arity() {
+				return 2;
+			}
+
+			@Override
+			public Object call(Interpreter interpreter, List<Object> args) {
+				LoxFile file = fileArg("readChunk", args.get(0));
+				return file.input().readChunk(Interpreter.countArg("readChunk", args.get(1)));
+			}
+
+			@Override
+			public String toString() {
+				return "<native fn>";
+			}
+		});
+
+		globals.define("readRecord", new LoxCallable() {
+			@Override
+			public int arity() {
+				return 2;
+			}
+
+			@Override
+			public Object call(Interpreter interpreter, List<Object> args) {
+				LoxFile file = fileArg("readRecord", args.get(0));
+				Object delimiter = args.get(1);
+				if (!(delimiter instanceof String) || ((String) delimiter).isEmpty()) {
+					throw new NativeFnError("Record delimiter must be a non-empty string.");
+				}
+
+				return file.input().readRecord((String) delimiter);
+			}
+
+			@Override
+			public String toString() {
+				return "<native fn>";
+			}
+		});
+
+		globals.define("closeFile", new LoxCallable() {
+			@Override
+			public int arity() {
+				return 1;
+			}
+
+			@Override
+			public Object call(Interpreter interpreter, List<Object> args) {
+				try {
+					fileArg("closeFile", args.get(0)).close();
+				} catch (IOException e) {
+					throw new NativeFnError("Could not close file: " + e.getMessage());
+				}
+
+				return null;
+			}
+
+			@Override
+			public String toString() {
+				return "<native fn>";
+			}
+		});
+	}
+
+	private static LoxFile fileArg(String name, Object arg) {
+		if (!(arg instanceof LoxFile)) {
+			throw new NativeFnError("Can only call '" + name + "()' on files.");
+		}
+
+		return (LoxFile) arg;
+	}
+}
@@ -0,0 +1,130 @@
+package com.jcode.lox;
+
+import com.jcode.lox.Expr.Assign;
+import com.jcode.lox.Expr.Binary;
+import com.jcode.lox.Expr.Call;
+import com.jcode.lox.Expr.Get;
+import com.jcode.lox.Expr.GetThis;
+import com.jcode.lox.Expr.Increment;
+import com.jcode.lox.Expr.Invoke;
+import com.jcode.lox.Expr.Literal;
+import com.jcode.lox.Expr.LocalCompare;
+import com.jcode.lox.Expr.NumericBinary;
+import com.jcode.lox.Expr.This;
+import com.jcode.lox.Expr.Variable;
+
+// Fuses the node shapes that hot code runs most into single nodes, which the
+// Interpreter runs without evaluating each child through the visitor:
+//  - x = x + c and x = x - c, and so x += c and x -= c, for a number c
+//  - a comparison of two locals
+//  - this.name
+//  - object.name(...), which calls a method without binding it first
+// PairProfiler shows which parent and child nodes a script evaluates most.
+// This runs last, as the other passes don't look inside fused nodes.
+class Fuser extends AstRewriter {
+	Fuser(IntNodeTable locals) {
+		super(locals);
+	}
+
+	@Override
+	public Expr visitAssignExpr(Assign expr) {
+		Assign assign = (Assign) super.visitAssignExpr(expr);
+
+		Expr left;
+		Token operator;
+		Expr right;
+		if (assign.value instanceof Binary) {
+			Binary binary = (Binary) assign.value;
+			left = binary.left;
+			operator = binary.operator;
+			right = binary.right;
+		} else if (assign.value instanceof NumericBinary) {
+			NumericBinary binary = (NumericBinary) assign.value;
+			left = binary.left;
+			operator = binary.operator;
+			right = binary.right;
+		} else {
+			return assign;
+		}
+
+		double sign;
+		switch (operator.type) {
+			case PLUS:
+			case PLUS_EQUAL:
+				sign = 1;
+				break;
+			case MINUS:
+			case MINUS_EQUAL:
+				sign = -1;
+				break;
+			default:
+				return assign;
+		}
+
+		if (!(left instanceof Variable) || ((Variable) left).name.symbol != expr.name.symbol
+				|| locals.get(left) != locals.get(expr))
+			return assign;
+
+		if (!(right instanceof Literal) || !(((Literal) right).value instanceof Double))
+			return assign;
+
+		Increment increment = new Increment(expr.name, operator, sign * (double) ((Literal) right).value);
+		int depth = locals.get(expr);
+		if (depth != IntNodeTable.MISSING) {
+			locals.put(increment, depth);
+		}
+
+		return increment;
+	}
+
+	@Override
+	public Expr visitBinaryExpr(Binary expr) {
+		Expr rewritten = super.visitBinaryExpr(expr);
+		if (isComparison(expr.operator) && isLocal(expr.left) && isLocal(expr.right))
+			return new LocalCompare((Variable) expr.left, expr.operator, (Variable) expr.right);
+
+		return rewritten;
+	}
+
+	@Override
+	public Expr visitNumericBinaryExpr(NumericBinary expr) {
+		Expr rewritten = super.visitNumericBinaryExpr(expr);
+		if (isComparison(expr.operator) && isLocal(expr.left) && isLocal(expr.right))
+			return new LocalCompare((Variable) expr.left, expr.operator, (Variable) expr.right);
+
+		return rewritten;
+	}
+
+	@Override
+	public Expr visitGetExpr(Get expr) {
+		if (expr.object instanceof This)
+			return new GetThis((This) expr.object, expr.name);
+
+		return super.visitGetExpr(expr);
+	}
+
+	@Override
+	public Expr visitCallExpr(Call expr) {
+		if (!(expr.callee instanceof Get))
+			return super.visitCallExpr(expr);
+
+		Get get = (Get) expr.callee;
+		return new Invoke(expr(get.object), get.name, expr.paren, exprs(expr.arguments));
+	}
+
+	private static boolean isComparison(Token operator) {
+		switch (operator.type) {
+			case GREATER:
+			case GREATER_EQUAL:
+			case LESS:
+			case LESS_EQUAL:
+				return true;
+			default:
+				return false;
+		}
+	}
+
+	private boolean isLocal(Expr expr) {
+		return expr instanceof Variable && locals.contains(expr);
+	}
+}
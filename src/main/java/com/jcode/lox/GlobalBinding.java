@@ -0,0 +1,34 @@
+package com.jcode.lox;
+
+// The callable a Bound call refers to, cached for one set of globals at a
+// time. A program can be run by several contexts, so the globals it was
+// looked up in are kept with it, along with their version: redefining or
+// assigning over a callable, say on a later REPL line, drops the binding.
+final class GlobalBinding {
+	private static final class Target {
+		final Environment globals;
+		final int version;
+		final LoxCallable callable;
+
+		Target(Environment globals, int version, LoxCallable callable) {
+			this.globals = globals;
+			this.version = version;
+			this.callable = callable;
+		}
+	}
+
+	private volatile Target target;
+
+	// Returns null if the call has to look its callee up again
+	LoxCallable get(Environment globals) {
+		Target target = this.target;
+		if (target != null && target.globals == globals && target.version == globals.version())
+			return target.callable;
+
+		return null;
+	}
+
+	void bind(Environment globals, int version, LoxCallable callable) {
+		target = new Target(globals, version, callable);
+	}
+}
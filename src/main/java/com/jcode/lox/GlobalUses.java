@@ -0,0 +1,78 @@
+package com.jcode.lox;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+import com.jcode.lox.Expr.Assign;
+import com.jcode.lox.Expr.Increment;
+import com.jcode.lox.Expr.Variable;
+import com.jcode.lox.Stmt.Class;
+import com.jcode.lox.Stmt.Function;
+import com.jcode.lox.Stmt.Var;
+
+// Collects the globals a program reads and assigns to, and how many times
+// each is declared at the top level
+class GlobalUses extends AstRewriter {
+	final java.util.Set<Symbol> read = new HashSet<>();
+	final java.util.Set<Symbol> assigned = new HashSet<>();
+	private final Map<Symbol, Integer> declarations = new HashMap<>();
+
+	GlobalUses(IntNodeTable locals) {
+		super(locals);
+	}
+
+	@Override
+	List<Stmt> rewrite(List<Stmt> statements) {
+		for (Stmt stmt : statements) {
+			Token name = null;
+			if (stmt instanceof Function) {
+				name = ((Function) stmt).name;
+			} else if (stmt instanceof Var) {
+				name = ((Var) stmt).name;
+			} else if (stmt instanceof Class) {
+				name = ((Class) stmt).name;
+			}
+
+			if (name != null) {
+				declarations.merge(name.symbol, 1, Integer::sum);
+			}
+		}
+
+		return super.rewrite(statements);
+	}
+
+	// Declared once at the top level and never assigned to
+	boolean isConstant(Symbol name) {
+		return declarations.getOrDefault(name, 0) == 1 && !assigned.contains(name);
+	}
+
+	@Override
+	public Expr visitVariableExpr(Variable expr) {
+		if (!locals.contains(expr)) {
+			read.add(expr.name.symbol);
+		}
+
+		return expr;
+	}
+
+	@Override
+	public Expr visitAssignExpr(Assign expr) {
+		if (!locals.contains(expr)) {
+			assigned.add(expr.name.symbol);
+		}
+
+		return super.visitAssignExpr(expr);
+	}
+
+	@Override
+	public Expr visitIncrementExpr(Increment expr) {
+		if (!locals.contains(expr)) {
+			read.add(expr.name.symbol);
+			assigned.add(expr.name.symbol);
+		}
+
+		return expr;
+	}
+}
@@ -0,0 +1,406 @@
+package com.jcode.lox;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+
+import com.jcode.lox.Expr.Array;
+import com.jcode.lox.Expr.Assign;
+import com.jcode.lox.Expr.Binary;
+import com.jcode.lox.Expr.Bound;
+import com.jcode.lox.Expr.Call;
+import com.jcode.lox.Expr.Dictionary;
+import com.jcode.lox.Expr.Get;
+import com.jcode.lox.Expr.GetThis;
+import com.jcode.lox.Expr.Grouping;
+import com.jcode.lox.Expr.Hoisted;
+import com.jcode.lox.Expr.Increment;
+import com.jcode.lox.Expr.Index;
+import com.jcode.lox.Expr.IndexSet;
+import com.jcode.lox.Expr.Inline;
+import com.jcode.lox.Expr.Invoke;
+import com.jcode.lox.Expr.Literal;
+import com.jcode.lox.Expr.LocalCompare;
+import com.jcode.lox.Expr.Logical;
+import com.jcode.lox.Expr.Negate;
+import com.jcode.lox.Expr.NumericBinary;
+import com.jcode.lox.Expr.Set;
+import com.jcode.lox.Expr.Super;
+import com.jcode.lox.Expr.Ternary;
+import com.jcode.lox.Expr.This;
+import com.jcode.lox.Expr.Unary;
+import com.jcode.lox.Expr.Variable;
+import com.jcode.lox.Stmt.Block;
+import com.jcode.lox.Stmt.Class;
+import com.jcode.lox.Stmt.Function;
+import com.jcode.lox.Stmt.Hoist;
+import com.jcode.lox.Stmt.While;
+
+// Moves loop invariant expressions out of While bodies. Each one is given a
+// slot, declared next to the loop by a Hoist, and replaced by a Hoisted that
+// fills the slot the first time it's evaluated and reads it after that. As
+// the first evaluation happens where it always did, an expression that's
+// never reached is never evaluated and errors are reported at the same point.
+//
+// An expression is invariant if it has no side effects and everything it
+// reads is declared outside the loop and can't change while it runs:
+//  - a variable must not be assigned in the loop or from inside any function
+//    declared outside it. A global also needs the loop to make no calls,
+//    since a function from an earlier REPL line could assign it
+//  - a property or index read needs the loop to make no calls and to set no
+//    property of that name or no index at all
+//
+// Nothing is moved out of functions or classes declared inside the loop.
+class Hoister extends AstRewriter {
+	// Names assigned from inside a function but declared outside it
+	private java.util.Set<Symbol> captured;
+
+	// Scopes between here and the globals
+	private int depth = 0;
+	private int nextSlot = 0;
+
+	Hoister(IntNodeTable locals) {
+		super(locals);
+	}
+
+	@Override
+	List<Stmt> rewrite(List<Stmt> statements) {
+		captured = Captures.find(locals, statements);
+		return stmts(statements);
+	}
+
+	@Override
+	public Stmt visitBlockStmt(Block stmt) {
+		depth++;
+		try {
+			return super.visitBlockStmt(stmt);
+		} finally {
+			depth--;
+		}
+	}
+
+	@Override
+	public Stmt visitFunctionStmt(Function stmt) {
+		depth++;
+		try {
+			return super.visitFunctionStmt(stmt);
+		} finally {
+			depth--;
+		}
+	}
+
+	@Override
+	public Stmt visitWhileStmt(While stmt) {
+		Effects effects = new Effects(locals);
+		effects.expr(stmt.condition);
+		effects.stmt(stmt.body);
+
+		Extractor extractor = new Extractor(effects);
+		Expr condition = extractor.expr(stmt.condition);
+		Stmt body = extractor.required(extractor.stmt(stmt.body));
+
+		if (extractor.slots.isEmpty())
+			return super.visitWhileStmt(stmt);
+
+		// Nested loops can still hoist what's invariant in them alone
+		Stmt loop = super.visitWhileStmt(new While(condition, body));
+		return new Hoist(extractor.slots, loop);
+	}
+
+	// Replaces the largest invariant expressions in one loop with slots
+	private class Extractor extends AstRewriter {
+		final List<Token> slots = new ArrayList<>();
+		final Invariance invariance;
+
+		// Scopes between here and the loop
+		int inner = 0;
+
+		Extractor(Effects effects) {
+			super(Hoister.this.locals);
+			this.invariance = new Invariance(effects);
+		}
+
+		@Override
+		protected Expr expr(Expr expr) {
+			if (expr == null || isTrivial(expr) || !expr.accept(invariance))
+				return super.expr(expr);
+
+			Token slot = new Token(TokenType.IDENTIFIER, Symbol.intern("loop invariant " + nextSlot++), 0);
+			slots.add(slot);
+
+			Hoisted hoisted = new Hoisted(slot, expr);
+			if (depth > 0) {
+				locals.put(hoisted, inner);
+			}
+
+			return hoisted;
+		}
+
+		@Override
+		public Stmt visitBlockStmt(Block stmt) {
+			inner++;
+			try {
+				return super.visitBlockStmt(stmt);
+			} finally {
+				inner--;
+			}
+		}
+
+		@Override
+		public Stmt visitFunctionStmt(Function stmt) {
+			return stmt;
+		}
+
+		@Override
+		public Stmt visitClassStmt(Class stmt) {
+			return stmt;
+		}
+
+		// The body runs in its own scope, so only the arguments can be moved
+		@Override
+		public Expr visitInlineExpr(Inline expr) {
+			List<Expr> arguments = exprs(expr.arguments);
+			if (arguments == expr.arguments)
+				return expr;
+
+			return new Inline(expr.name, expr.paren, expr.params, arguments, expr.body, expr.binding);
+		}
+
+		// Reading a variable or a slot costs as much as a slot would
+		private boolean isTrivial(Expr expr) {
+			while (expr instanceof Grouping) {
+				expr = ((Grouping) expr).expression;
+			}
+
+			return expr instanceof Literal || expr instanceof Variable || expr instanceof This
+					|| expr instanceof Hoisted;
+		}
+
+		private class Invariance implements Expr.Visitor<Boolean> {
+			private final Effects effects;
+
+			// Inside an inlined body, where locals are its parameters
+			private boolean inlined = false;
+
+			Invariance(Effects effects) {
+				this.effects = effects;
+			}
+
+			private boolean invariant(Expr expr) {
+				return expr.accept(this);
+			}
+
+			private boolean invariant(List<Expr> exprs) {
+				for (Expr expr : exprs) {
+					if (!invariant(expr))
+						return false;
+				}
+
+				return true;
+			}
+
+			@Override
+			public Boolean visitTernaryExpr(Ternary expr) {
+				return invariant(expr.left) && invariant(expr.middle) && invariant(expr.right);
+			}
+
+			@Override
+			public Boolean visitAssignExpr(Assign expr) {
+				return false;
+			}
+
+			@Override
+			public Boolean visitIncrementExpr(Increment expr) {
+				return false;
+			}
+
+			@Override
+			public Boolean visitBinaryExpr(Binary expr) {
+				return invariant(expr.left) && invariant(expr.right);
+			}
+
+			@Override
+			public Boolean visitNumericBinaryExpr(NumericBinary expr) {
+				return invariant(expr.left) && invariant(expr.right);
+			}
+
+			@Override
+			public Boolean visitLocalCompareExpr(LocalCompare expr) {
+				return invariant(expr.left) && invariant(expr.right);
+			}
+
+			@Override
+			public Boolean visitCallExpr(Call expr) {
+				return false;
+			}
+
+			@Override
+			public Boolean visitInvokeExpr(Invoke expr) {
+				return false;
+			}
+
+			@Override
+			public Boolean visitBoundExpr(Bound expr) {
+				return false;
+			}
+
+			@Override
+			public Boolean visitInlineExpr(Inline expr) {
+				// A call in the loop could redefine the function, making this one
+				if (effects.calls || !invariant(expr.arguments))
+					return false;
+
+				boolean enclosing = inlined;
+				inlined = true;
+				try {
+					return invariant(expr.body);
+				} finally {
+					inlined = enclosing;
+				}
+			}
+
+			@Override
+			public Boolean visitHoistedExpr(Hoisted expr) {
+				return true;
+			}
+
+			@Override
+			public Boolean visitGetExpr(Get expr) {
+				return !effects.calls && !effects.properties.contains(expr.name.symbol) && invariant(expr.object);
+			}
+
+			@Override
+			public Boolean visitGetThisExpr(GetThis expr) {
+				return !effects.calls && !effects.properties.contains(expr.name.symbol);
+			}
+
+			@Override
+			public Boolean visitSetExpr(Set expr) {
+				return false;
+			}
+
+			@Override
+			public Boolean visitIndexExpr(Index expr) {
+				return !effects.calls && !effects.indexes && invariant(expr.object) && invariant(expr.index);
+			}
+
+			@Override
+			public Boolean visitIndexSetExpr(IndexSet expr) {
+				return false;
+			}
+
+			@Override
+			public Boolean visitThisExpr(This expr) {
+				return true;
+			}
+
+			@Override
+			public Boolean visitSuperExpr(Super expr) {
+				return false;
+			}
+
+			@Override
+			public Boolean visitGroupingExpr(Grouping expr) {
+				return invariant(expr.expression);
+			}
+
+			@Override
+			public Boolean visitLiteralExpr(Literal expr) {
+				return true;
+			}
+
+			// Each evaluation makes a new array or map
+			@Override
+			public Boolean visitArrayExpr(Array expr) {
+				return false;
+			}
+
+			@Override
+			public Boolean visitDictionaryExpr(Dictionary expr) {
+				return false;
+			}
+
+			@Override
+			public Boolean visitLogicalExpr(Logical expr) {
+				return invariant(expr.left) && invariant(expr.right);
+			}
+
+			@Override
+			public Boolean visitVariableExpr(Variable expr) {
+				Symbol name = expr.name.symbol;
+				int distance = locals.get(expr);
+				if (distance == IntNodeTable.MISSING)
+					return !effects.calls && !effects.assigned.contains(name) && !captured.contains(name);
+
+				if (inlined)
+					return true;
+
+				return distance >= inner && !effects.assigned.contains(name) && !captured.contains(name);
+			}
+
+			@Override
+			public Boolean visitUnaryExpr(Unary expr) {
+				return invariant(expr.right);
+			}
+
+			@Override
+			public Boolean visitNegateExpr(Negate expr) {
+				return invariant(expr.right);
+			}
+		}
+	}
+
+	// What running a loop can change
+	private static class Effects extends AstRewriter {
+		final java.util.Set<Symbol> assigned = new HashSet<>();
+		final java.util.Set<Symbol> properties = new HashSet<>();
+		boolean indexes = false;
+		boolean calls = false;
+
+		Effects(IntNodeTable locals) {
+			super(locals);
+		}
+
+		@Override
+		public Expr visitAssignExpr(Assign expr) {
+			assigned.add(expr.name.symbol);
+			return super.visitAssignExpr(expr);
+		}
+
+		@Override
+		public Expr visitIncrementExpr(Increment expr) {
+			assigned.add(expr.name.symbol);
+			return expr;
+		}
+
+		@Override
+		public Expr visitSetExpr(Set expr) {
+			properties.add(expr.name.symbol);
+			return super.visitSetExpr(expr);
+		}
+
+		@Override
+		public Expr visitIndexSetExpr(IndexSet expr) {
+			indexes = true;
+			return super.visitIndexSetExpr(expr);
+		}
+
+		@Override
+		public Expr visitCallExpr(Call expr) {
+			calls = true;
+			return super.visitCallExpr(expr);
+		}
+
+		@Override
+		public Expr visitBoundExpr(Bound expr) {
+			calls = true;
+			return super.visitBoundExpr(expr);
+		}
+
+		@Override
+		public Expr visitInvokeExpr(Invoke expr) {
+			calls = true;
+			return super.visitInvokeExpr(expr);
+		}
+	}
+}
@@ -0,0 +1,125 @@
+package com.jcode.lox;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.jcode.lox.Expr.Call;
+import com.jcode.lox.Expr.Inline;
+import com.jcode.lox.Expr.Variable;
+import com.jcode.lox.Stmt.Function;
+import com.jcode.lox.Stmt.Return;
+
+// Replaces calls to small top-level functions with their bodies. A function
+// can be inlined if its body is a single return of an expression no bigger
+// than BUDGET nodes, it doesn't refer to itself, and its name is declared
+// once at the top level and never assigned to. Only calls that come after
+// the declaration are replaced, so the function is always defined by the
+// time they run. The name can still be redefined from outside the program,
+// say on a later REPL line, so each Inline checks the function it stands for
+// is still the global and makes a call if not.
+class Inliner extends AstRewriter {
+	private static final int BUDGET = 24;
+
+	private final Map<Symbol, Function> candidates = new HashMap<>();
+	private final Map<Symbol, Expr> bodies = new HashMap<>();
+
+	Inliner(IntNodeTable locals) {
+		super(locals);
+	}
+
+	@Override
+	List<Stmt> rewrite(List<Stmt> statements) {
+		findCandidates(statements);
+		if (candidates.isEmpty())
+			return statements;
+
+		List<Stmt> rewritten = new ArrayList<>(statements.size());
+		for (Stmt statement : statements) {
+			Stmt stmt = stmt(statement);
+			rewritten.add(stmt);
+
+			if (stmt instanceof Function) {
+				Function function = (Function) stmt;
+				Symbol name = function.name.symbol;
+				if (candidates.containsKey(name)) {
+					Expr body = ((Return) function.body.get(0)).value;
+					if (new Counter(locals).count(body) <= BUDGET) {
+						candidates.put(name, function);
+						bodies.put(name, body);
+					}
+				}
+			}
+		}
+
+		return rewritten;
+	}
+
+	private void findCandidates(List<Stmt> statements) {
+		GlobalUses globals = new GlobalUses(locals);
+		globals.rewrite(statements);
+
+		for (Stmt stmt : statements) {
+			if (!(stmt instanceof Function))
+				continue;
+
+			Function function = (Function) stmt;
+			if (!globals.isConstant(function.name.symbol) || function.body.size() != 1)
+				continue;
+
+			Stmt only = function.body.get(0);
+			if (!(only instanceof Return) || ((Return) only).value == null)
+				continue;
+
+			GlobalUses body = new GlobalUses(locals);
+			body.stmts(function.body);
+			if (!body.read.contains(function.name.symbol)) {
+				candidates.put(function.name.symbol, function);
+			}
+		}
+	}
+
+	@Override
+	public Expr visitCallExpr(Call expr) {
+		List<Expr> arguments = exprs(expr.arguments);
+
+		if (expr.callee instanceof Variable && !locals.contains(expr.callee)) {
+			Symbol name = ((Variable) expr.callee).name.symbol;
+			Expr body = bodies.get(name);
+			if (body != null) {
+				Function function = candidates.get(name);
+				if (function.params.size() == arguments.size())
+					return new Inline(function.name, expr.paren, function.params, arguments, body,
+							new GlobalBinding());
+			}
+		}
+
+		if (arguments == expr.arguments)
+			return expr;
+
+		return new Call(expr.callee, expr.paren, arguments);
+	}
+
+	private static class Counter extends AstRewriter {
+		private int nodes = 0;
+
+		Counter(IntNodeTable locals) {
+			super(locals);
+		}
+
+		int count(Expr expr) {
+			expr(expr);
+			return nodes;
+		}
+
+		@Override
+		protected Expr expr(Expr expr) {
+			if (expr != null) {
+				nodes++;
+			}
+
+			return super.expr(expr);
+		}
+	}
+}
@@ -0,0 +1,55 @@
+package com.jcode.lox;
+
+import java.util.Arrays;
+
+// A NodeTable of non-negative ints, stored unboxed. Each is kept plus one so
+// an unset entry reads as MISSING.
+final class IntNodeTable {
+	static final int MISSING = -1;
+
+	private int base = 0;
+	private int[] values = new int[0];
+
+	int get(Node node) {
+		int index = node.id - base;
+		return index >= 0 && index < values.length ? values[index] - 1 : MISSING;
+	}
+
+	boolean contains(Node node) {
+		return get(node) != MISSING;
+	}
+
+	void put(Node node, int value) {
+		int index = index(node);
+		values[index] = value + 1;
+	}
+
+	IntNodeTable copy() {
+		IntNodeTable copy = new IntNodeTable();
+		copy.base = base;
+		copy.values = values.clone();
+		return copy;
+	}
+
+	// Grows the array to cover the node's id
+	private int index(Node node) {
+		if (values.length == 0) {
+			base = node.id;
+			values = new int[16];
+		}
+
+		int index = node.id - base;
+		if (index < 0) {
+			int shift = Math.max(-index, values.length);
+			int[] grown = new int[values.length + shift];
+			System.arraycopy(values, 0, grown, shift, values.length);
+			values = grown;
+			base -= shift;
+			index += shift;
+		} else if (index >= values.length) {
+			values = Arrays.copyOf(values, Math.max(index + 1, values.length * 2));
+		}
+
+		return index;
+	}
+}
@@ -1,18 +1,31 @@
 package com.jcode.lox;
 
+import java.io.PrintStream;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Scanner;
 
+import com.jcode.lox.Expr.Array;
 import com.jcode.lox.Expr.Assign;
 import com.jcode.lox.Expr.Binary;
+import com.jcode.lox.Expr.Bound;
 import com.jcode.lox.Expr.Call;
+import com.jcode.lox.Expr.Dictionary;
 import com.jcode.lox.Expr.Get;
+import com.jcode.lox.Expr.GetThis;
 import com.jcode.lox.Expr.Grouping;
+import com.jcode.lox.Expr.Hoisted;
+import com.jcode.lox.Expr.Increment;
+import com.jcode.lox.Expr.Index;
+import com.jcode.lox.Expr.IndexSet;
+import com.jcode.lox.Expr.Inline;
+import com.jcode.lox.Expr.Invoke;
 import com.jcode.lox.Expr.Literal;
+import com.jcode.lox.Expr.LocalCompare;
 import com.jcode.lox.Expr.Logical;
+import com.jcode.lox.Expr.Negate;
+import com.jcode.lox.Expr.NumericBinary;
 import com.jcode.lox.Expr.Set;
 import com.jcode.lox.Expr.Super;
 import com.jcode.lox.Expr.Ternary;
@@ -25,18 +38,37 @@ import com.jcode.lox.Stmt.Class;
 import com.jcode.lox.Stmt.Continue;
 import com.jcode.lox.Stmt.Expression;
 import com.jcode.lox.Stmt.Function;
+import com.jcode.lox.Stmt.Hoist;
 import com.jcode.lox.Stmt.If;
 import com.jcode.lox.Stmt.Return;
 import com.jcode.lox.Stmt.Var;
 import com.jcode.lox.Stmt.While;
 
 class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
-	final Environment globals = new Environment();
-	private Environment environment = globals;
-	private Scanner scan;
-	private final Map<Expr, Integer> locals = new HashMap<>();
+	// An empty slot for a hoisted loop invariant
+	private static final Object UNSET = new Object();
+
+	final Environment globals;
+	private Environment environment;
+	private IntNodeTable locals = new IntNodeTable();
+
+	// The optimised tier of the program being run, if it's tiered
+	private Tiers tiers = null;
+	private final PrintStream out;
+	private final LineInput input;
+	final ErrorReporter reporter;
 
 	public Interpreter() {
+		this(System.out, LineInput.stdin(), new ErrorReporter(System.err));
+	}
+
+	Interpreter(PrintStream out, LineInput input, ErrorReporter reporter) {
+		this.globals = new Environment();
+		this.environment = globals;
+		this.out = out;
+		this.input = input;
+		this.reporter = reporter;
+
 		globals.define("clock", new LoxCallable() {
 			@Override
 			public int arity() {
@@ -105,7 +137,7 @@ class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
 
 			@Override
 			public Object call(Interpreter interpreter, List<Object> args) {
-				System.out.print(stringify(args.get(0)));
+				out.print(stringify(args.get(0)));
 				return null;
 			}
 
@@ -123,7 +155,7 @@ class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
 
 			@Override
 			public Object call(Interpreter interpreter, List<Object> args) {
-				System.out.println(stringify(args.get(0)));
+				out.println(stringify(args.get(0)));
 				return null;
 			}
 
@@ -141,11 +173,24 @@ class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
 
 			@Override
 			public Object call(Interpreter interpreter, List<Object> args) {
-				if (scan.hasNextLine()) {
-					return scan.nextLine();
-				}
+				return input.readLine();
+			}
 
-				return null;
+			@Override
+			public String toString() {
+				return "<native fn>";
+			}
+		});
+
+		globals.define("inputLines", new LoxCallable() {
+			@Override
+			public int arity() {
+				return 1;
+			}
+
+			@Override
+			public Object call(Interpreter interpreter, List<Object> args) {
+				return input.readLines(countArg("inputLines", args.get(0)));
 			}
 
 			@Override
@@ -153,22 +198,71 @@ class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
 				return "<native fn>";
 			}
 		});
+
+		globals.define("inputChunk", new LoxCallable() {
+			@Override
+			public int arity() {
+				return 1;
+			}
+
+			@Override
+			public Object call(Interpreter interpreter, List<Object> args) {
+				return input.readChunk(countArg("inputChunk", args.get(0)));
+			}
+
+			@Override
+			public String toString() {
+				return "<native fn>";
+			}
+		});
+
+		globals.define("inputAll", new LoxCallable() {
+			@Override
+			public int arity() {
+				return 0;
+			}
+
+			@Override
+			public Object call(Interpreter interpreter, List<Object> args) {
+				return input.readAll();
+			}
+
+			@Override
+			public String toString() {
+				return "<native fn>";
+			}
+		});
+
+		FileNatives.define(globals);
+		ConcurrencyNatives.define(globals);
+		ArrayNatives.define(globals);
+		MapNatives.define(globals);
+		ParallelNatives.define(globals);
 	}
 
-	public void interpret(List<Stmt> statements) {
-		scan = new Scanner(System.in);
+	// For a task on another thread: shares the globals and I/O, but has its
+	// own environment and call stack
+	Interpreter(Interpreter spawner) {
+		this.globals = spawner.globals;
+		this.environment = globals;
+		this.out = spawner.out;
+		this.input = spawner.input;
+		this.reporter = spawner.reporter;
+	}
+
+	public void interpret(LoxProgram program) {
+		locals = program.locals;
+		tiers = program.tiers;
 
 		try {
-			for (Stmt statement : statements) {
+			for (Stmt statement : program.statements) {
 				execute(statement);
 			}
 		} catch (RuntimeError error) {
-			Lox.runtimeError(error);
+			reporter.runtimeError(error);
 		} catch (NativeFnError error) {
-			Lox.nativeFnError(error);
+			reporter.nativeFnError(error);
 		}
-
-		scan.close();
 	}
 
 	@Override
@@ -184,10 +278,12 @@ class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
 
 	@Override
 	public Object visitBinaryExpr(Binary expr) {
-		Object left = evaluate(expr.left);
-		Object right = evaluate(expr.right);
+		return binary(expr.operator, evaluate(expr.left), evaluate(expr.right));
+	}
 
-		switch (expr.operator.type) {
+	// Also applies the operator of a compound assignment, such as +=
+	private Object binary(Token operator, Object left, Object right) {
+		switch (operator.type) {
 			case GREATER:
 				if (left instanceof Double && right instanceof Double) {
 					return (double) left > (double) right;
@@ -197,7 +293,7 @@ class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
 					return ((String) left).compareTo((String) right) > 0;
 				}
 
-				throw new RuntimeError(expr.operator, "Operands must be two numbers or two strings.");
+				throw new RuntimeError(operator, "Operands must be two numbers or two strings.");
 			case GREATER_EQUAL:
 				if (left instanceof Double && right instanceof Double) {
 					return (double) left >= (double) right;
@@ -207,7 +303,7 @@ class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
 					return ((String) left).compareTo((String) right) >= 0;
 				}
 
-				throw new RuntimeError(expr.operator, "Operands must be two numbers or two strings.");
+				throw new RuntimeError(operator, "Operands must be two numbers or two strings.");
 			case LESS:
 				if (left instanceof Double && right instanceof Double) {
 					return (double) left < (double) right;
@@ -217,7 +313,7 @@ class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
 					return ((String) left).compareTo((String) right) < 0;
 				}
 
-				throw new RuntimeError(expr.operator, "Operands must be two numbers or two strings.");
+				throw new RuntimeError(operator, "Operands must be two numbers or two strings.");
 			case LESS_EQUAL:
 				if (left instanceof Double && right instanceof Double) {
 					return (double) left <= (double) right;
@@ -227,10 +323,10 @@ class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
 					return ((String) left).compareTo((String) right) <= 0;
 				}
 
-				throw new RuntimeError(expr.operator, "Operands must be two numbers or two strings.");
+				throw new RuntimeError(operator, "Operands must be two numbers or two strings.");
 			case MINUS:
 			case MINUS_EQUAL:
-				checkNumberOperands(expr.operator, left, right);
+				checkNumberOperands(operator, left, right);
 				return (double) left - (double) right;
 			case BANG_EQUAL:
 				return !isEqual(left, right);
@@ -246,18 +342,18 @@ class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
 					return (String) left + (String) right;
 				}
 
-				throw new RuntimeError(expr.operator, "Operands must be two numbers or two strings.");
+				throw new RuntimeError(operator, "Operands must be two numbers or two strings.");
 			case SLASH:
 			case SLASH_EQUAL:
-				checkNumberOperands(expr.operator, left, right);
+				checkNumberOperands(operator, left, right);
 
 				if ((double) right == 0) {
-					throw new RuntimeError(expr.operator, "Cannot divide by zero.");
+					throw new RuntimeError(operator, "Cannot divide by zero.");
 				}
 				return (double) left / (double) right;
 			case STAR:
 			case STAR_EQUAL:
-				checkNumberOperands(expr.operator, left, right);
+				checkNumberOperands(operator, left, right);
 				return (double) left * (double) right;
 			default:
 				break;
@@ -267,6 +363,84 @@ class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
 		return null;
 	}
 
+	// Arithmetic and comparisons on operands TypeInference proved are numbers
+	@Override
+	public Object visitNumericBinaryExpr(NumericBinary expr) {
+		double left = (double) evaluate(expr.left);
+		double right = (double) evaluate(expr.right);
+
+		switch (expr.operator.type) {
+			case GREATER:
+				return left > right;
+			case GREATER_EQUAL:
+				return left >= right;
+			case LESS:
+				return left < right;
+			case LESS_EQUAL:
+				return left <= right;
+			case MINUS:
+			case MINUS_EQUAL:
+				return left - right;
+			case PLUS:
+			case PLUS_EQUAL:
+				return left + right;
+			case SLASH:
+			case SLASH_EQUAL:
+				if (right == 0) {
+					throw new RuntimeError(expr.operator, "Cannot divide by zero.");
+				}
+				return left / right;
+			case STAR:
+			case STAR_EQUAL:
+				return left * right;
+			default:
+				break;
+		}
+
+		// Unreachable
+		return null;
+	}
+
+	// A comparison of two locals, read without evaluating Variable nodes
+	@Override
+	public Object visitLocalCompareExpr(LocalCompare expr) {
+		Object left = environment.getAt(locals.get(expr.left), expr.left.name.symbol);
+		Object right = environment.getAt(locals.get(expr.right), expr.right.name.symbol);
+
+		if (left instanceof Double && right instanceof Double) {
+			double a = (double) left;
+			double b = (double) right;
+
+			switch (expr.operator.type) {
+				case GREATER:
+					return a > b;
+				case GREATER_EQUAL:
+					return a >= b;
+				case LESS:
+					return a < b;
+				default:
+					return a <= b;
+			}
+		}
+
+		if (left instanceof String && right instanceof String) {
+			int order = ((String) left).compareTo((String) right);
+
+			switch (expr.operator.type) {
+				case GREATER:
+					return order > 0;
+				case GREATER_EQUAL:
+					return order >= 0;
+				case LESS:
+					return order < 0;
+				default:
+					return order <= 0;
+			}
+		}
+
+		throw new RuntimeError(expr.operator, "Operands must be two numbers or two strings.");
+	}
+
 	@Override
 	public Object visitGroupingExpr(Grouping expr) {
 		return evaluate(expr.expression);
@@ -277,6 +451,27 @@ class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
 		return expr.value;
 	}
 
+	@Override
+	public Object visitArrayExpr(Array expr) {
+		LoxArray array = new LoxArray(expr.elements.size());
+		for (Expr element : expr.elements) {
+			array.add(evaluate(element));
+		}
+
+		return array;
+	}
+
+	@Override
+	public Object visitDictionaryExpr(Dictionary expr) {
+		LoxMap map = new LoxMap(expr.keys.size());
+		for (int i = 0; i < expr.keys.size(); i++) {
+			Object key = evaluate(expr.keys.get(i));
+			map.put(key, evaluate(expr.values.get(i)));
+		}
+
+		return map;
+	}
+
 	@Override
 	public Object visitLogicalExpr(Logical expr) {
 		Object left = evaluate(expr.left);
@@ -309,15 +504,20 @@ class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
 		return null;
 	}
 
+	@Override
+	public Object visitNegateExpr(Negate expr) {
+		return -(double) evaluate(expr.right);
+	}
+
 	@Override
 	public Object visitVariableExpr(Variable expr) {
 		return lookUpVariable(expr.name, expr);
 	}
 
 	private Object lookUpVariable(Token name, Expr expr) {
-		Integer distance = locals.get(expr);
-		if (distance != null) {
-			return environment.getAt(distance, name.lexeme);
+		int distance = locals.get(expr);
+		if (distance != IntNodeTable.MISSING) {
+			return environment.getAt(distance, name.symbol);
 		} else {
 			return globals.get(name);
 		}
@@ -335,7 +535,15 @@ class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
 		throw new RuntimeError(operator, "Operands must be numbers.");
 	}
 
-	private boolean isTruthy(Object object) {
+	static int countArg(String name, Object arg) {
+		if (!(arg instanceof Double) || (double) arg < 1 || (double) arg != Math.floor((double) arg)) {
+			throw new NativeFnError("Argument to '" + name + "()' must be a positive whole number.");
+		}
+
+		return (int) Math.min((double) arg, Integer.MAX_VALUE);
+	}
+
+	static boolean isTruthy(Object object) {
 		if (object == null)
 			return false;
 		if (object instanceof Boolean)
@@ -343,7 +551,7 @@ class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
 		return true;
 	}
 
-	private boolean isEqual(Object a, Object b) {
+	static boolean isEqual(Object a, Object b) {
 		if (a == null && b == null)
 			return true;
 		if (a == null)
@@ -352,7 +560,7 @@ class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
 		return a.equals(b);
 	}
 
-	private String stringify(Object object) {
+	static String stringify(Object object) {
 		if (object == null)
 			return "nil";
 
@@ -368,18 +576,14 @@ class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
 		return object.toString();
 	}
 
-	private Object evaluate(Expr expr) {
+	Object evaluate(Expr expr) {
 		return expr.accept(this);
 	}
 
-	private void execute(Stmt stmt) {
+	void execute(Stmt stmt) {
 		stmt.accept(this);
 	}
 
-	public void resolve(Expr expr, int depth) {
-		locals.put(expr, depth);
-	}
-
 	public void executeBlock(List<Stmt> statements, Environment environment) {
 		Environment previous = this.environment;
 
@@ -394,6 +598,22 @@ class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
 		}
 	}
 
+	// Runs a function body with the scope depths and tiers of the program it
+	// came from
+	void executeBlock(List<Stmt> statements, Environment environment, IntNodeTable locals, Tiers tiers) {
+		IntNodeTable previousLocals = this.locals;
+		Tiers previousTiers = this.tiers;
+
+		try {
+			this.locals = locals;
+			this.tiers = tiers;
+			executeBlock(statements, environment);
+		} finally {
+			this.locals = previousLocals;
+			this.tiers = previousTiers;
+		}
+	}
+
 	@Override
 	public Void visitBlockStmt(Block stmt) {
 		executeBlock(stmt.statements, new Environment(environment));
@@ -423,18 +643,24 @@ class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
 		if (stmt.initialiser != null)
 			value = evaluate(stmt.initialiser);
 
-		environment.define(stmt.name.lexeme, value);
+		environment.define(stmt.name.symbol, value);
 		return null;
 	}
 
 	@Override
 	public Void visitWhileStmt(While stmt) {
+		int iterations = 0;
+
 		try {
-			while (isTruthy(evaluate(stmt.condition))) {
+			// A null condition was folded to true by the Optimiser
+			while (stmt.condition == null || isTruthy(evaluate(stmt.condition))) {
 				try {
 					execute(stmt.body);
 				} catch (com.jcode.lox.Continue error) {
 				}
+
+				if (tiers != null && ++iterations == tiers.policy.loops && replace(stmt, iterations))
+					return null;
 			}
 		} catch (com.jcode.lox.Break error) {
 		}
@@ -442,12 +668,70 @@ class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
 		return null;
 	}
 
+	// Finishes a long running loop in its optimised version, which starts
+	// with the next condition check. Returns false if it doesn't have one.
+	private boolean replace(While loop, int iterations) {
+		Stmt optimised = tiers.optimised(loop);
+		if (optimised == null)
+			return false;
+
+		tiers.replaced(loop, iterations);
+
+		IntNodeTable previous = locals;
+		try {
+			locals = tiers.locals();
+			execute(optimised);
+		} finally {
+			locals = previous;
+		}
+
+		return true;
+	}
+
+	// Slots for a loop's invariant expressions, each filled the first time
+	// it's used after the loop is entered
+	@Override
+	public Void visitHoistStmt(Hoist stmt) {
+		for (Token slot : stmt.slots) {
+			environment.define(slot.symbol, UNSET);
+		}
+
+		try {
+			execute(stmt.loop);
+		} finally {
+			// Don't keep the values alive once the loop is done
+			for (Token slot : stmt.slots) {
+				environment.define(slot.symbol, UNSET);
+			}
+		}
+
+		return null;
+	}
+
+	@Override
+	public Object visitHoistedExpr(Hoisted expr) {
+		int distance = locals.get(expr);
+		Object value = distance != IntNodeTable.MISSING ? environment.getAt(distance, expr.slot.symbol)
+				: globals.get(expr.slot);
+		if (value != UNSET)
+			return value;
+
+		value = evaluate(expr.expression);
+		if (distance != IntNodeTable.MISSING) {
+			environment.assignAt(distance, expr.slot, value);
+		} else {
+			globals.assign(expr.slot, value);
+		}
+
+		return value;
+	}
+
 	@Override
 	public Object visitAssignExpr(Assign expr) {
 		Object value = evaluate(expr.value);
 
-		Integer distance = locals.get(expr);
-		if (distance != null) {
+		int distance = locals.get(expr);
+		if (distance != IntNodeTable.MISSING) {
 			environment.assignAt(distance, expr.name, value);
 		} else {
 			globals.assign(expr.name, value);
@@ -456,6 +740,31 @@ class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
 		return value;
 	}
 
+	// Adds a constant to a variable, which the Fuser made from x = x + c,
+	// x = x - c and their compound forms
+	@Override
+	public Object visitIncrementExpr(Increment expr) {
+		int distance = locals.get(expr);
+		Environment scope = distance != IntNodeTable.MISSING ? environment.ancestor(distance) : null;
+
+		Object value = scope != null ? scope.getAt(0, expr.name.symbol) : globals.get(expr.name);
+		if (!(value instanceof Double)) {
+			TokenType type = expr.operator.type;
+			if (type == TokenType.PLUS || type == TokenType.PLUS_EQUAL)
+				throw new RuntimeError(expr.operator, "Operands must be two numbers or two strings.");
+			throw new RuntimeError(expr.operator, "Operands must be numbers.");
+		}
+
+		Object result = (double) value + expr.delta;
+		if (scope != null) {
+			scope.assignAt(0, expr.name, result);
+		} else {
+			globals.assign(expr.name, result);
+		}
+
+		return result;
+	}
+
 	@Override
 	public Void visitBreakStmt(Break stmt) {
 		throw new com.jcode.lox.Break();
@@ -468,30 +777,116 @@ class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
 
 	@Override
 	public Object visitCallExpr(Call expr) {
-		Object callee = evaluate(expr.callee);
+		return call(evaluate(expr.callee), expr.paren, expr.arguments);
+	}
 
+	private Object call(Object callee, Token paren, List<Expr> arguments) {
 		List<Object> args = new ArrayList<>();
+		for (Expr arg : arguments) {
+			args.add(evaluate(arg));
+		}
+
+		return callable(callee, paren, args.size()).call(this, args);
+	}
+
+	// A method call that doesn't bind the method, unless a field shadows it
+	@Override
+	public Object visitInvokeExpr(Invoke expr) {
+		Object object = evaluate(expr.object);
+		if (!(object instanceof LoxInstance)) {
+			throw new RuntimeError(expr.name, "Only instances have properties.");
+		}
+
+		LoxInstance instance = (LoxInstance) object;
+		LoxFunction method = instance.method(expr.name);
+		Object callee = method != null ? method : instance.get(expr.name);
+
+		List<Object> args = new ArrayList<>(expr.arguments.size());
 		for (Expr arg : expr.arguments) {
 			args.add(evaluate(arg));
 		}
 
+		LoxCallable function = callable(callee, expr.paren, args.size());
+		if (method != null)
+			return method.invoke(this, instance, args);
+
+		return function.call(this, args);
+	}
+
+	private static LoxCallable callable(Object callee, Token paren, int arguments) {
 		if (!(callee instanceof LoxCallable)) {
-			throw new RuntimeError(expr.paren, "Can only call funcitons and classes.");
+			throw new RuntimeError(paren, "Can only call funcitons and classes.");
 		}
 
 		LoxCallable function = (LoxCallable) callee;
-		if (args.size() != function.arity()) {
-			throw new RuntimeError(expr.paren,
-					"Expected " + function.arity() + " arguments, but got " + args.size() + ".");
+		if (arguments != function.arity()) {
+			throw new RuntimeError(paren,
+					"Expected " + function.arity() + " arguments, but got " + arguments + ".");
+		}
+
+		return function;
+	}
+
+	// A call to a global function or class, checked by the Binder. The
+	// callable is only looked up and checked again when its binding has been
+	// dropped.
+	@Override
+	public Object visitBoundExpr(Bound expr) {
+		LoxCallable function = expr.binding.get(globals);
+		int version = 0;
+		Object callee = function;
+		if (function == null) {
+			version = globals.version();
+			callee = globals.get(expr.callee.name);
+		}
+
+		List<Object> args = new ArrayList<>(expr.arguments.size());
+		for (Expr arg : expr.arguments) {
+			args.add(evaluate(arg));
+		}
+
+		if (function == null) {
+			function = callable(callee, expr.paren, args.size());
+			expr.binding.bind(globals, version, function);
 		}
 
 		return function.call(this, args);
 	}
 
+	// The body of a top-level function, substituted by the Inliner. Its
+	// parameters are bound in a scope directly under the globals, just as a
+	// call would, without the call's argument list and Return exception.
+	// The body stands for the call only while the global is a function from
+	// the same declaration, checked as a Bound call's binding is.
+	@Override
+	public Object visitInlineExpr(Inline expr) {
+		if (expr.binding.get(globals) == null) {
+			int version = globals.version();
+			Object callee = globals.get(expr.name);
+			if (!(callee instanceof LoxFunction) || !((LoxFunction) callee).declaredAs(expr.name))
+				return call(callee, expr.paren, expr.arguments);
+
+			expr.binding.bind(globals, version, (LoxFunction) callee);
+		}
+
+		Environment frame = new Environment(globals);
+		for (int i = 0; i < expr.params.size(); i++) {
+			frame.define(expr.params.get(i).symbol, evaluate(expr.arguments.get(i)));
+		}
+
+		Environment previous = environment;
+		try {
+			environment = frame;
+			return evaluate(expr.body);
+		} finally {
+			environment = previous;
+		}
+	}
+
 	@Override
 	public Void visitFunctionStmt(Function stmt) {
-		LoxFunction function = new LoxFunction(stmt, environment, false);
-		environment.define(stmt.name.lexeme, function);
+		LoxFunction function = new LoxFunction(stmt, environment, locals, tiers, false);
+		environment.define(stmt.name.symbol, function);
 		return null;
 	}
 
@@ -514,17 +909,18 @@ class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
 			}
 		}
 
-		environment.define(stmt.name.lexeme, null);
+		environment.define(stmt.name.symbol, null);
 
 		if (stmt.superclass != null) {
 			environment = new Environment(environment);
-			environment.define("super", superclass);
+			environment.define(Symbol.SUPER, superclass);
 		}
 
-		Map<String, LoxFunction> methods = new HashMap<>();
+		Map<Symbol, LoxFunction> methods = new HashMap<>();
 		for (Stmt.Function method : stmt.methods) {
-			LoxFunction function = new LoxFunction(method, environment, method.name.lexeme.equals("init"));
-			methods.put(method.name.lexeme, function);
+			LoxFunction function = new LoxFunction(method, environment, locals, tiers,
+					method.name.symbol == Symbol.INIT);
+			methods.put(method.name.symbol, function);
 		}
 
 		LoxClass klass = new LoxClass(stmt.name.lexeme, (LoxClass) superclass, methods);
@@ -547,6 +943,12 @@ class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
 		throw new RuntimeError(expr.name, "Only instances have properties.");
 	}
 
+	@Override
+	public Object visitGetThisExpr(GetThis expr) {
+		LoxInstance instance = (LoxInstance) environment.getAt(locals.get(expr.object), Symbol.THIS);
+		return instance.get(expr.name);
+	}
+
 	@Override
 	public Object visitSetExpr(Set expr) {
 		Object object = evaluate(expr.object);
@@ -561,6 +963,61 @@ class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
 		return value;
 	}
 
+	@Override
+	public Object visitIndexExpr(Index expr) {
+		Object object = evaluate(expr.object);
+		Object index = evaluate(expr.index);
+
+		if (object instanceof LoxMap)
+			return ((LoxMap) object).get(index);
+
+		if (!(object instanceof LoxArray)) {
+			throw new RuntimeError(expr.bracket, "Can only index arrays and maps.");
+		}
+
+		LoxArray array = (LoxArray) object;
+		return array.get(arrayIndex(expr.bracket, array, index));
+	}
+
+	@Override
+	public Object visitIndexSetExpr(IndexSet expr) {
+		Object object = evaluate(expr.object);
+		Object index = evaluate(expr.index);
+
+		if (object instanceof LoxMap) {
+			LoxMap map = (LoxMap) object;
+			Object value = expr.operator.type == TokenType.EQUAL ? evaluate(expr.value)
+					: binary(expr.operator, map.get(index), evaluate(expr.value));
+			map.put(index, value);
+			return value;
+		}
+
+		if (!(object instanceof LoxArray)) {
+			throw new RuntimeError(expr.bracket, "Can only index arrays and maps.");
+		}
+
+		LoxArray array = (LoxArray) object;
+		int i = arrayIndex(expr.bracket, array, index);
+		Object value = expr.operator.type == TokenType.EQUAL ? evaluate(expr.value)
+				: binary(expr.operator, array.get(i), evaluate(expr.value));
+		array.set(i, value);
+
+		return value;
+	}
+
+	private static int arrayIndex(Token bracket, LoxArray array, Object index) {
+		if (!(index instanceof Double) || (double) index != Math.floor((double) index)) {
+			throw new RuntimeError(bracket, "Array index must be a whole number.");
+		}
+
+		double i = (double) index;
+		if (i < 0 || i >= array.size()) {
+			throw new RuntimeError(bracket, "Array index out of range.");
+		}
+
+		return (int) i;
+	}
+
 	@Override
 	public Object visitThisExpr(This expr) {
 		return lookUpVariable(expr.keyword, expr);
@@ -569,9 +1026,9 @@ class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
 	@Override
 	public Object visitSuperExpr(Super expr) {
 		int distance = locals.get(expr);
-		LoxClass superclass = (LoxClass) environment.getAt(distance, "super");
-		LoxInstance object = (LoxInstance) environment.getAt(distance - 1, "this");
-		LoxFunction method = superclass.findMethod(expr.method.lexeme);
+		LoxClass superclass = (LoxClass) environment.getAt(distance, Symbol.SUPER);
+		LoxInstance object = (LoxInstance) environment.getAt(distance - 1, Symbol.THIS);
+		LoxFunction method = superclass.findMethod(expr.method.symbol);
 
 		if (method == null) {
 			throw new RuntimeError(expr.method, "Undefined property '" + expr.method.lexeme + "'.");
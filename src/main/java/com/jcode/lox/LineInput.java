@@ -0,0 +1,209 @@
+package com.jcode.lox;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+
+class LineInput {
+	private static final int BUFFER_SIZE = 1 << 16;
+	private static final byte[] NEWLINE = { '\n' };
+
+	private static LineInput stdin;
+
+	private final ReadableByteChannel channel;
+	private final CharsetDecoder decoder;
+	private final CharBuffer chars = CharBuffer.allocate(BUFFER_SIZE);
+	private final StringBuilder text = new StringBuilder();
+
+	protected ByteBuffer bytes;
+
+	LineInput(InputStream in) {
+		this(Channels.newChannel(in));
+	}
+
+	LineInput(ReadableByteChannel channel) {
+		this.channel = channel;
+		this.decoder = newDecoder();
+		this.bytes = ByteBuffer.allocateDirect(BUFFER_SIZE);
+		this.bytes.flip();
+	}
+
+	protected LineInput(ByteBuffer bytes) {
+		this.channel = null;
+		this.decoder = newDecoder();
+		this.bytes = bytes;
+	}
+
+	// Shared by every interpreter so buffered bytes are never lost, and never
+	// closed so the REPL can keep reading after a script has finished
+	static synchronized LineInput stdin() {
+		if (stdin == null) {
+			stdin = new LineInput(System.in);
+		}
+
+		return stdin;
+	}
+
+	private static CharsetDecoder newDecoder() {
+		return Charset.defaultCharset().newDecoder()
+				.onMalformedInput(CodingErrorAction.REPLACE)
+				.onUnmappableCharacter(CodingErrorAction.REPLACE);
+	}
+
+	synchronized String readLine() {
+		String line = readUntil(NEWLINE);
+		if (line != null && line.endsWith("\r")) {
+			return line.substring(0, line.length() - 1);
+		}
+
+		return line;
+	}
+
+	synchronized String readRecord(String delimiter) {
+		return readUntil(delimiter.getBytes(decoder.charset()));
+	}
+
+	synchronized String readLines(int count) {
+		String first = readLine();
+		if (first == null)
+			return null;
+
+		StringBuilder lines = new StringBuilder(first);
+		for (int i = 1; i < count; i++) {
+			String line = readLine();
+			if (line == null)
+				break;
+
+			lines.append('\n').append(line);
+		}
+
+		return lines.toString();
+	}
+
+	// Reads up to size bytes, or a single character if size is too small to
+	// hold one
+	synchronized String readChunk(int size) {
+		text.setLength(0);
+		int want = size;
+
+		while (true) {
+			if (bytes.remaining() >= want) {
+				decode(bytes.position() + want, false);
+				if (text.length() > 0)
+					return text.toString();
+
+				// A character is at most 4 bytes
+				want = 4;
+				continue;
+			}
+
+			decode(bytes.limit(), false);
+			if (text.length() > 0)
+				return text.toString();
+
+			if (!fill()) {
+				decode(bytes.limit(), true);
+				return text.length() == 0 ? null : text.toString();
+			}
+		}
+	}
+
+	synchronized String readAll() {
+		StringBuilder all = new StringBuilder();
+		String chunk;
+		while ((chunk = readChunk(BUFFER_SIZE)) != null) {
+			all.append(chunk);
+		}
+
+		return all.toString();
+	}
+
+	// Returns false once no more bytes are available
+	protected boolean fill() {
+		try {
+			bytes.compact();
+			int read = 0;
+			while (read == 0 && bytes.hasRemaining()) {
+				read = channel.read(bytes);
+			}
+			bytes.flip();
+			return read > 0;
+		} catch (IOException e) {
+			throw new NativeFnError("Could not read input: " + e.getMessage());
+		}
+	}
+
+	private String readUntil(byte[] delimiter) {
+		text.setLength(0);
+		boolean read = false;
+
+		while (true) {
+			int found = indexOf(delimiter);
+			if (found >= 0) {
+				decode(found, false);
+				bytes.position(found + delimiter.length);
+				return text.toString();
+			}
+
+			// Hold back enough bytes to match a delimiter split across a refill
+			int end = bytes.limit() - (delimiter.length - 1);
+			if (end > bytes.position()) {
+				read = true;
+				decode(end, false);
+			}
+
+			if (!fill()) {
+				read |= bytes.hasRemaining();
+				decode(bytes.limit(), true);
+				return read ? text.toString() : null;
+			}
+		}
+	}
+
+	private int indexOf(byte[] delimiter) {
+		int last = bytes.limit() - delimiter.length;
+		for (int i = bytes.position(); i <= last; i++) {
+			int j = 0;
+			while (j < delimiter.length && bytes.get(i + j) == delimiter[j]) {
+				j++;
+			}
+
+			if (j == delimiter.length)
+				return i;
+		}
+
+		return -1;
+	}
+
+	// Decodes bytes up to end into text, leaving any incomplete trailing
+	// character in the buffer for the next call
+	private void decode(int end, boolean endOfInput) {
+		int limit = bytes.limit();
+		bytes.limit(end);
+
+		while (true) {
+			boolean overflow = decoder.decode(bytes, chars, endOfInput).isOverflow();
+			if (endOfInput && !overflow) {
+				overflow = decoder.flush(chars).isOverflow();
+			}
+
+			chars.flip();
+			text.append(chars);
+			chars.clear();
+
+			if (!overflow)
+				break;
+		}
+
+		bytes.limit(limit);
+		if (endOfInput) {
+			decoder.reset();
+		}
+	}
+}
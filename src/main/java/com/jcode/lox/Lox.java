@@ -3,100 +3,210 @@ package com.jcode.lox;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
-import java.nio.charset.Charset;
-import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Set;
 
 public class Lox {
-    private static final Interpreter interpreter = new Interpreter();
+    private static final ErrorReporter reporter = new ErrorReporter(System.err);
+    private static final Interpreter interpreter = new Interpreter(System.out, LineInput.stdin(), reporter);
 
-    private static boolean hadError = false;
-    private static boolean hadLoneExprError = false;
-    private static boolean hadRuntimeError = false;
+    private static AstCache cache = null;
+    private static Set<Optimisation> optimisations = Optimisation.DEFAULT;
+
+    // Set when functions and loops only get optimised once they're hot
+    private static Tiers.Policy tiering = null;
 
     public static void main(String[] args) throws IOException {
-        if (args.length > 1) {
-            System.out.println("Usage: jlox <script>");
-            System.exit(64);
-        } else if (args.length == 1) {
-            runFile(args[0]);
+        List<String> scripts = new ArrayList<>();
+        int servePort = -1;
+        int connectPort = -1;
+        String batch = null;
+        boolean virtualThreads = false;
+        boolean dumpTypes = false;
+        boolean profilePairs = false;
+        boolean tiered = false;
+        int tierCalls = Tiers.Policy.CALLS;
+        int tierLoops = Tiers.Policy.LOOPS;
+        boolean tierLog = false;
+        int workers = Runtime.getRuntime().availableProcessors();
+
+        for (String arg : args) {
+            if (!arg.startsWith("--")) {
+                scripts.add(arg);
+            } else if (arg.startsWith("--cache=")) {
+                cache = new AstCache(Paths.get(optionValue(arg)));
+            } else if (arg.startsWith("--serve=")) {
+                servePort = intOption(arg);
+            } else if (arg.startsWith("--workers=")) {
+                workers = intOption(arg);
+            } else if (arg.startsWith("--connect=")) {
+                connectPort = intOption(arg);
+            } else if (arg.startsWith("--optimise=")) {
+                optimisations = Optimisation.parse(optionValue(arg));
+                if (optimisations == null)
+                    usage();
+            } else if (arg.equals("--tiered")) {
+                tiered = true;
+            } else if (arg.startsWith("--tier-calls=")) {
+                tierCalls = intOption(arg);
+            } else if (arg.startsWith("--tier-loops=")) {
+                tierLoops = intOption(arg);
+            } else if (arg.equals("--tier-log")) {
+                tierLog = true;
+            } else if (arg.equals("--dump-types")) {
+                dumpTypes = true;
+            } else if (arg.equals("--profile-pairs")) {
+                profilePairs = true;
+            } else if (arg.startsWith("--batch=")) {
+                batch = optionValue(arg);
+            } else if (arg.equals("--threads=virtual")) {
+                virtualThreads = true;
+            } else if (arg.equals("--threads=platform")) {
+                virtualThreads = false;
+            } else {
+                usage();
+            }
+        }
+
+        if (tiered) {
+            if (tierCalls < 1 || tierLoops < 1)
+                usage();
+            tiering = new Tiers.Policy(tierCalls, tierLoops, tierLog ? System.err : null);
+        }
+
+        if (servePort >= 0) {
+            if (!scripts.isEmpty())
+                usage();
+            new LoxServer(servePort, workers, cache).serve();
+        } else if (batch != null) {
+            if (!scripts.isEmpty())
+                usage();
+            int exitCode = new LoxBatch(workers, virtualThreads, cache).run(Paths.get(batch));
+            if (exitCode != 0)
+                System.exit(exitCode);
+        } else if (scripts.size() > 1) {
+            usage();
+        } else if (connectPort >= 0) {
+            if (scripts.isEmpty())
+                usage();
+            System.exit(LoxServer.connect(connectPort, Paths.get(scripts.get(0))));
+        } else if (dumpTypes) {
+            if (scripts.isEmpty() || !optimisations.contains(Optimisation.TYPES))
+                usage();
+            dumpTypes(scripts.get(0));
+        } else if (profilePairs) {
+            if (scripts.isEmpty())
+                usage();
+            profilePairs(scripts.get(0));
+        } else if (scripts.size() == 1) {
+            runFile(scripts.get(0));
         } else {
             runPrompt();
         }
     }
 
-    private static void runFile(String path) throws IOException {
-        byte[] bytes = Files.readAllBytes(Paths.get(path));
-        run(new String(bytes, Charset.defaultCharset()));
-
-        if (hadError)
-            System.exit(65);
-        if (hadRuntimeError)
-            System.exit(70);
-        ;
+    private static String optionValue(String arg) {
+        return arg.substring(arg.indexOf('=') + 1);
     }
 
-    private static void runPrompt() throws IOException {
-        InputStreamReader input = new InputStreamReader(System.in);
-        BufferedReader reader = new BufferedReader(input);
-
-        while (true) {
-            System.out.print("> ");
-            String line = reader.readLine();
-            if (line == null) {
-                break;
-            }
-
-            run(line);
-            hadError = false;
+    private static int intOption(String arg) {
+        try {
+            return Integer.parseInt(optionValue(arg));
+        } catch (NumberFormatException e) {
+            usage();
+            return -1;
         }
     }
 
-    private static void run(String source) {
-        Scanner scanner = new Scanner(source);
-        List<Token> tokens = scanner.scanTokens();
-        Parser parser = new Parser(tokens);
-        List<Stmt> statements = parser.parse();
-
-        // Stop if syntax error
-        if (hadError)
-            return;
-
-        Resolver resolver = new Resolver(interpreter);
-        resolver.resolve(statements);
-
-        // Stop if resolve error
-        if (hadError)
-            return;
+    private static void usage() {
+        System.out.println("Usage: jlox [--cache=<dir>] [--optimise=<pass,...>|none] [script]");
+        System.out.println("       jlox [--optimise=<pass,...>] --tiered [--tier-calls=<n>] [--tier-loops=<n>] [--tier-log] [script]");
+        System.out.println("       jlox [--optimise=<pass,...>] --dump-types <script>");
+        System.out.println("       jlox [--optimise=<pass,...>|none] --profile-pairs <script>");
+        System.out.println("       jlox [--cache=<dir>] [--workers=<n>] --serve=<port>");
+        System.out.println("       jlox --connect=<port> <script>");
+        System.out.println("       jlox [--cache=<dir>] [--workers=<n>] [--threads=platform|virtual] --batch=<dir|manifest>");
+        System.exit(64);
+    }
 
-        interpreter.interpret(statements);
+    private static void runFile(String path) throws IOException {
+        int exitCode = runScript(Paths.get(path), interpreter, cache);
+        if (exitCode != 0)
+            System.exit(exitCode);
     }
 
-    public static void error(int line, String message) {
-        report(line, "", message);
+    // Prints the types inferred for a script's locals and arithmetic without
+    // running it
+    private static void dumpTypes(String path) throws IOException {
+        LoxProgram.compile(MappedSource.open(Paths.get(path)), reporter, optimisations, System.out);
+        if (reporter.exitCode() != 0)
+            System.exit(reporter.exitCode());
     }
 
-    private static void report(int line, String where, String message) {
-        System.err.println("[line " + line + "] Error" + where + ": " + message);
-        hadError = true;
+    // Runs a script, then prints how often each kind of node ran directly
+    // under each other kind
+    private static void profilePairs(String path) throws IOException {
+        PairProfiler profiler = new PairProfiler(System.out, LineInput.stdin(), reporter);
+        int exitCode = runScript(Paths.get(path), profiler, cache);
+        profiler.print(System.err);
+        if (exitCode != 0)
+            System.exit(exitCode);
     }
 
-    public static void error(Token token, String message) {
-        if (token.type == TokenType.EOF) {
-            report(token.line, " at end", message);
+    // Runs a whole script and returns its exit code
+    static int runScript(Path script, Interpreter interpreter, AstCache cache) throws IOException {
+        ErrorReporter reporter = interpreter.reporter;
+        Set<Optimisation> passes = tiering == null ? optimisations : EnumSet.noneOf(Optimisation.class);
+        LoxProgram program;
+
+        if (cache == null) {
+            program = LoxProgram.compile(MappedSource.open(script), reporter, passes);
         } else {
-            report(token.line, " at '" + token.lexeme + "'", message);
+            String key = AstCache.key(script, passes);
+            program = cache.load(key);
+            if (program == null) {
+                program = LoxProgram.compile(MappedSource.open(script), reporter, passes);
+                if (program != null)
+                    cache.store(key, program);
+            }
         }
+
+        if (program != null && tiering != null)
+            program = program.tiered(reporter, optimisations, tiering);
+
+        if (program != null)
+            interpreter.interpret(program);
+
+        return reporter.exitCode();
     }
 
-    public static void runtimeError(RuntimeError error) {
-        System.err.println(error.getMessage() + "\n[line " + error.token.line + "]");
-        hadRuntimeError = true;
+    private static void runPrompt() throws IOException {
+        InputStreamReader input = new InputStreamReader(System.in);
+        BufferedReader reader = new BufferedReader(input);
+
+        while (true) {
+            System.out.print("> ");
+            String line = reader.readLine();
+            if (line == null) {
+                break;
+            }
+
+            run(line, interpreter);
+            reporter.hadError = false;
+        }
     }
 
-    public static void nativeFnError(NativeFnError error) {
-        System.err.println(error.getMessage());
-        hadRuntimeError = true;
+    static void run(CharSequence source, Interpreter interpreter) {
+        Set<Optimisation> passes = tiering == null ? optimisations : EnumSet.noneOf(Optimisation.class);
+        LoxProgram program = LoxProgram.compile(source, interpreter.reporter, passes);
+        if (program != null && tiering != null)
+            program = program.tiered(interpreter.reporter, optimisations, tiering);
+
+        if (program != null)
+            interpreter.interpret(program);
     }
 }
@@ -0,0 +1,177 @@
+package com.jcode.lox;
+
+import java.util.Arrays;
+
+// A growable array. Elements are kept unboxed in a double[] while every one
+// is a number, and move to an Object[] the first time anything else is
+// stored. They move back when isNumeric() finds only numbers again, so how
+// an array is stored never changes what the natives accept.
+class LoxArray {
+	private double[] numbers;
+	private Object[] objects;
+	private int size;
+
+	LoxArray(int capacity) {
+		this.numbers = new double[Math.max(capacity, 4)];
+	}
+
+	LoxArray(int size, Object value) {
+		this(size);
+		this.size = size;
+		fill(value);
+	}
+
+	// Takes ownership of numbers, which must hold at least size elements
+	static LoxArray ofNumbers(double[] numbers, int size) {
+		LoxArray array = new LoxArray(0);
+		array.numbers = numbers;
+		array.size = size;
+		return array;
+	}
+
+	int size() {
+		return size;
+	}
+
+	// Whether every element is a number, after which numbers() is valid
+	boolean isNumeric() {
+		if (objects == null)
+			return true;
+
+		for (int i = 0; i < size; i++) {
+			if (!(objects[i] instanceof Double))
+				return false;
+		}
+
+		specialise();
+		return true;
+	}
+
+	// The storage of a numeric array, valid up to size()
+	double[] numbers() {
+		return numbers;
+	}
+
+	Object get(int index) {
+		if (objects == null)
+			return numbers[index];
+
+		return objects[index];
+	}
+
+	void set(int index, Object value) {
+		if (objects == null) {
+			if (value instanceof Double) {
+				numbers[index] = (double) value;
+				return;
+			}
+
+			generalise();
+		}
+
+		objects[index] = value;
+	}
+
+	void add(Object value) {
+		int capacity = objects == null ? numbers.length : objects.length;
+		if (size == capacity) {
+			if (objects == null) {
+				numbers = Arrays.copyOf(numbers, capacity * 2);
+			} else {
+				objects = Arrays.copyOf(objects, capacity * 2);
+			}
+		}
+
+		size++;
+		set(size - 1, value);
+	}
+
+	Object removeLast() {
+		Object value = get(size - 1);
+		if (objects != null) {
+			objects[size - 1] = null;
+		}
+
+		size--;
+		return value;
+	}
+
+	void fill(Object value) {
+		if (objects == null && !(value instanceof Double)) {
+			generalise();
+		}
+
+		if (objects == null) {
+			Arrays.fill(numbers, 0, size, (double) value);
+		} else {
+			Arrays.fill(objects, 0, size, value);
+		}
+	}
+
+	LoxArray copy() {
+		LoxArray copy = new LoxArray(0);
+		copy.size = size;
+		if (objects == null) {
+			copy.numbers = Arrays.copyOf(numbers, Math.max(size, 4));
+		} else {
+			copy.objects = Arrays.copyOf(objects, Math.max(size, 4));
+			copy.numbers = null;
+		}
+
+		return copy;
+	}
+
+	// Only called on numeric arrays
+	double sum() {
+		return ArrayKernels.sum(numbers, size);
+	}
+
+	// Numbers and strings sort in their natural order, anything else can't be
+	// compared
+	boolean sort() {
+		if (isNumeric()) {
+			Arrays.sort(numbers, 0, size);
+			return true;
+		}
+
+		for (int i = 0; i < size; i++) {
+			if (!(objects[i] instanceof String))
+				return false;
+		}
+
+		Arrays.sort(objects, 0, size);
+		return true;
+	}
+
+	private void generalise() {
+		objects = new Object[numbers.length];
+		for (int i = 0; i < size; i++) {
+			objects[i] = numbers[i];
+		}
+
+		numbers = null;
+	}
+
+	private void specialise() {
+		numbers = new double[objects.length];
+		for (int i = 0; i < size; i++) {
+			numbers[i] = (double) objects[i];
+		}
+
+		objects = null;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder text = new StringBuilder("[");
+		for (int i = 0; i < size; i++) {
+			if (i > 0) {
+				text.append(", ");
+			}
+
+			text.append(Interpreter.stringify(get(i)));
+		}
+
+		return text.append("]").toString();
+	}
+}
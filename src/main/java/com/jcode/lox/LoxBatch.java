@@ -0,0 +1,204 @@
+package com.jcode.lox;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.lang.reflect.Method;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+// Runs many independent scripts in one JVM. Each script is parsed and run on
+// a worker in its own Interpreter with captured output, which is copied out
+// in script order, followed by a summary of every run.
+//
+// The batch is either a directory, searched for .lox files, or a manifest
+// listing one script per line relative to the manifest. Blank lines and lines
+// starting with # are skipped.
+class LoxBatch {
+	// As in sysexits.h, for a script that can't be read
+	private static final int EXIT_NO_INPUT = 66;
+
+	private final int workers;
+	private final boolean virtualThreads;
+	private final AstCache cache;
+
+	LoxBatch(int workers, boolean virtualThreads, AstCache cache) {
+		this.workers = workers;
+		this.virtualThreads = virtualThreads;
+		this.cache = cache;
+	}
+
+	// Returns the highest exit code of any script
+	int run(Path batch) throws IOException {
+		List<Path> scripts = scripts(batch);
+		List<Future<Result>> results = new ArrayList<>(scripts.size());
+
+		ExecutorService executor = executor();
+		try {
+			for (Path script : scripts) {
+				results.add(executor.submit(() -> runScript(script)));
+			}
+
+			List<Result> finished = new ArrayList<>(scripts.size());
+			for (Future<Result> result : results) {
+				Result run = await(result);
+				System.out.write(run.out, 0, run.out.length);
+				System.err.write(run.err, 0, run.err.length);
+				finished.add(run);
+			}
+
+			System.err.flush();
+			return summary(finished);
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	private static List<Path> scripts(Path batch) throws IOException {
+		if (Files.isDirectory(batch)) {
+			try (Stream<Path> files = Files.walk(batch)) {
+				return files.filter(file -> file.toString().endsWith(".lox") && Files.isRegularFile(file)).sorted()
+						.collect(Collectors.toList());
+			}
+		}
+
+		Path base = batch.toAbsolutePath().getParent();
+		List<Path> scripts = new ArrayList<>();
+		for (String line : Files.readAllLines(batch)) {
+			line = line.trim();
+			if (!line.isEmpty() && !line.startsWith("#")) {
+				scripts.add(base.resolve(line));
+			}
+		}
+
+		return scripts;
+	}
+
+	private ExecutorService executor() {
+		if (virtualThreads) {
+			// Looked up by name so this still builds and runs on JDKs without them
+			try {
+				Method perTask = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+				return (ExecutorService) perTask.invoke(null);
+			} catch (ReflectiveOperationException e) {
+				System.err.println("Virtual threads are not available, using " + workers + " platform threads.");
+			}
+		}
+
+		return Executors.newFixedThreadPool(workers);
+	}
+
+	private Result runScript(Path script) {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		ByteArrayOutputStream err = new ByteArrayOutputStream();
+		PrintStream stdout = new PrintStream(out);
+		PrintStream stderr = new PrintStream(err);
+
+		ErrorReporter reporter = new ErrorReporter(stderr);
+		Interpreter interpreter = new Interpreter(stdout, new LineInput(InputStream.nullInputStream()), reporter);
+
+		long start = System.nanoTime();
+		int exitCode;
+		boolean internal = false;
+		try {
+			exitCode = Lox.runScript(script, interpreter, cache);
+		} catch (IOException e) {
+			stderr.println("Could not read script '" + script + "'.");
+			exitCode = EXIT_NO_INPUT;
+		} catch (StackOverflowError e) {
+			stderr.println("Stack overflow.");
+			exitCode = 70;
+		} catch (RuntimeException e) {
+			// A bug in the interpreter. The trace goes with the script's own
+			// stderr, so the rest of the batch and the summary still run.
+			stderr.println("Internal error: " + e);
+			e.printStackTrace(stderr);
+			exitCode = 70;
+			internal = true;
+		}
+		long nanos = System.nanoTime() - start;
+
+		stdout.flush();
+		stderr.flush();
+		return new Result(script, exitCode, internal, nanos, out.toByteArray(), err.toByteArray());
+	}
+
+	private static Result await(Future<Result> result) throws IOException {
+		try {
+			return result.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted waiting for batch.", e);
+		} catch (ExecutionException e) {
+			throw new IOException("Batch script failed.", e.getCause());
+		}
+	}
+
+	private static int summary(List<Result> results) {
+		int worst = 0;
+		int failed = 0;
+		long nanos = 0;
+
+		System.out.println();
+		System.out.println(String.format("%-8s %10s %10s  %s", "status", "time (ms)", "output", "script"));
+		for (Result result : results) {
+			System.out.println(String.format("%-8s %10.1f %10d  %s", status(result), result.nanos / 1e6,
+					result.out.length, result.script));
+
+			worst = Math.max(worst, result.exitCode);
+			nanos += result.nanos;
+			if (result.exitCode != 0) {
+				failed++;
+			}
+		}
+
+		System.out.println(String.format("%d scripts, %d failed, %.1f ms total script time", results.size(), failed,
+				nanos / 1e6));
+		return worst;
+	}
+
+	private static String status(Result result) {
+		if (result.internal)
+			return "internal";
+
+		switch (result.exitCode) {
+			case 0:
+				return "ok";
+			case 65:
+				return "compile";
+			case 70:
+				return "runtime";
+			case EXIT_NO_INPUT:
+				return "noinput";
+			default:
+				return "exit " + result.exitCode;
+		}
+	}
+
+	private static class Result {
+		final Path script;
+		final int exitCode;
+		final boolean internal;
+		final long nanos;
+		final byte[] out;
+		final byte[] err;
+
+		Result(Path script, int exitCode, boolean internal, long nanos, byte[] out, byte[] err) {
+			this.script = script;
+			this.exitCode = exitCode;
+			this.internal = internal;
+			this.nanos = nanos;
+			this.out = out;
+			this.err = err;
+		}
+	}
+}
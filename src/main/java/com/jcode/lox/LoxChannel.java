@@ -0,0 +1,73 @@
+package com.jcode.lox;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+
+// A bounded queue between tasks. send() blocks while the channel is full and
+// receive() while it is empty. Tasks blocked in select() register a semaphore
+// that every send releases.
+class LoxChannel {
+	// Returned by poll() when there's nothing to take, as nil is a valid value
+	static final Object EMPTY = new Object();
+
+	private final Object[] buffer;
+	private int head = 0;
+	private int count = 0;
+	private final List<Semaphore> selectors = new ArrayList<>();
+
+	LoxChannel(int capacity) {
+		this.buffer = new Object[capacity];
+	}
+
+	synchronized void send(Object value) throws InterruptedException {
+		while (count == buffer.length) {
+			wait();
+		}
+
+		buffer[(head + count) % buffer.length] = value;
+		count++;
+		notifyAll();
+
+		for (Semaphore selector : selectors) {
+			selector.release();
+		}
+	}
+
+	synchronized Object receive() throws InterruptedException {
+		while (count == 0) {
+			wait();
+		}
+
+		return take();
+	}
+
+	synchronized Object poll() {
+		if (count == 0)
+			return EMPTY;
+
+		return take();
+	}
+
+	synchronized void watch(Semaphore selector) {
+		selectors.add(selector);
+	}
+
+	synchronized void unwatch(Semaphore selector) {
+		selectors.remove(selector);
+	}
+
+	private Object take() {
+		Object value = buffer[head];
+		buffer[head] = null;
+		head = (head + 1) % buffer.length;
+		count--;
+		notifyAll();
+		return value;
+	}
+
+	@Override
+	public String toString() {
+		return "<channel>";
+	}
+}
@@ -6,9 +6,9 @@ import java.util.Map;
 class LoxClass implements LoxCallable {
 	public String name;
 	final LoxClass superclass;
-	private final Map<String, LoxFunction> methods;
+	private final Map<Symbol, LoxFunction> methods;
 
-	public LoxClass(String name, LoxClass superclass, Map<String, LoxFunction> methods) {
+	public LoxClass(String name, LoxClass superclass, Map<Symbol, LoxFunction> methods) {
 		this.name = name;
 		this.superclass = superclass;
 		this.methods = methods;
@@ -16,7 +16,7 @@ class LoxClass implements LoxCallable {
 
 	@Override
 	public int arity() {
-		LoxFunction initialiser = findMethod("init");
+		LoxFunction initialiser = findMethod(Symbol.INIT);
 		if (initialiser == null)
 			return 0;
 
@@ -26,7 +26,7 @@ class LoxClass implements LoxCallable {
 	@Override
 	public Object call(Interpreter interpreter, List<Object> args) {
 		LoxInstance instance = new LoxInstance(this);
-		LoxFunction initialiser = findMethod("init");
+		LoxFunction initialiser = findMethod(Symbol.INIT);
 		if (initialiser != null) {
 			initialiser.bind(instance).call(interpreter, args);
 		}
@@ -39,7 +39,7 @@ class LoxClass implements LoxCallable {
 		return name;
 	}
 
-	public LoxFunction findMethod(String name) {
+	public LoxFunction findMethod(Symbol name) {
 		if (methods.containsKey(name)) {
 			return methods.get(name);
 		}
@@ -0,0 +1,46 @@
+package com.jcode.lox;
+
+import java.io.InputStream;
+import java.io.PrintStream;
+
+// One isolated execution environment: its own globals, input, output and
+// error reporting. Programs can be run in any number of contexts at once, but
+// a single context must only be used by one thread at a time.
+public class LoxContext {
+	private final Interpreter interpreter;
+	private final ErrorReporter reporter;
+
+	LoxContext(PrintStream out, PrintStream err, InputStream in) {
+		this.reporter = new ErrorReporter(err);
+		this.interpreter = new Interpreter(out, new LineInput(in), reporter);
+	}
+
+	// Runs the program against this context's globals, which persist between
+	// runs, and returns its exit code (0, or 70 after a runtime error)
+	public int execute(LoxProgram program) {
+		reporter.hadError = false;
+		reporter.hadRuntimeError = false;
+
+		try {
+			interpreter.interpret(program);
+		} catch (StackOverflowError e) {
+			reporter.nativeFnError(new NativeFnError("Stack overflow."));
+		}
+
+		return reporter.exitCode();
+	}
+
+	// Numbers are converted to Lox's doubles; strings, booleans and null are
+	// passed through as they are
+	public void set(String name, Object value) {
+		if (value instanceof Number) {
+			value = ((Number) value).doubleValue();
+		}
+
+		interpreter.globals.define(Symbol.intern(name), value);
+	}
+
+	public Object get(String name) {
+		return interpreter.globals.getAt(0, Symbol.intern(name));
+	}
+}
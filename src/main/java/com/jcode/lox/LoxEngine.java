@@ -0,0 +1,69 @@
+package com.jcode.lox;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+// Entry point for embedding Lox. Compile a script once into a LoxProgram, then
+// run it in as many LoxContexts as needed, each with its own globals and
+// output. The engine itself holds no per-run state and can be shared.
+public class LoxEngine {
+	private final AstCache cache;
+
+	public LoxEngine() {
+		this.cache = null;
+	}
+
+	// Caches compiled script files in the given directory, as with --cache
+	public LoxEngine(Path cacheDirectory) {
+		this.cache = new AstCache(cacheDirectory);
+	}
+
+	public LoxProgram compile(String source) {
+		ByteArrayOutputStream errors = new ByteArrayOutputStream();
+		ErrorReporter reporter = new ErrorReporter(new PrintStream(errors, true));
+
+		LoxProgram program = LoxProgram.compile(source, reporter);
+		if (program == null)
+			throw new LoxException(new String(errors.toByteArray(), StandardCharsets.UTF_8).trim());
+
+		return program;
+	}
+
+	public LoxProgram compile(Path script) throws IOException {
+		String key = null;
+		if (cache != null) {
+			key = AstCache.key(script, Optimisation.DEFAULT);
+			LoxProgram program = cache.load(key);
+			if (program != null)
+				return program;
+		}
+
+		ByteArrayOutputStream errors = new ByteArrayOutputStream();
+		ErrorReporter reporter = new ErrorReporter(new PrintStream(errors, true));
+
+		LoxProgram program = LoxProgram.compile(MappedSource.open(script), reporter);
+		if (program == null)
+			throw new LoxException(new String(errors.toByteArray(), StandardCharsets.UTF_8).trim());
+
+		if (cache != null)
+			cache.store(key, program);
+
+		return program;
+	}
+
+	public LoxContext createContext() {
+		return createContext(System.out, System.err);
+	}
+
+	public LoxContext createContext(PrintStream out, PrintStream err) {
+		return createContext(out, err, InputStream.nullInputStream());
+	}
+
+	public LoxContext createContext(PrintStream out, PrintStream err, InputStream in) {
+		return new LoxContext(out, err, in);
+	}
+}
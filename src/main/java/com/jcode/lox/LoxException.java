@@ -0,0 +1,8 @@
+package com.jcode.lox;
+
+// Thrown by the embedding API when a script fails to compile
+public class LoxException extends RuntimeException {
+	LoxException(String message) {
+		super(message);
+	}
+}
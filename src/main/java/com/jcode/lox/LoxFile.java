@@ -0,0 +1,36 @@
+package com.jcode.lox;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+class LoxFile {
+	private final String path;
+	private MappedInput input;
+
+	LoxFile(String path) throws IOException {
+		this.path = path;
+		this.input = new MappedInput(FileChannel.open(Paths.get(path), StandardOpenOption.READ));
+	}
+
+	MappedInput input() {
+		if (input == null) {
+			throw new NativeFnError("File '" + path + "' is closed.");
+		}
+
+		return input;
+	}
+
+	void close() throws IOException {
+		if (input != null) {
+			input.close();
+			input = null;
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "<file " + path + ">";
+	}
+}
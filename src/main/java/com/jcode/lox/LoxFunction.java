@@ -5,15 +5,26 @@ import java.util.List;
 class LoxFunction implements LoxCallable {
 	private final Stmt.Function declaration;
 	private final Environment closure;
+	private final IntNodeTable locals;
+	private final Tiers tiers;
 
 	private boolean isInitialiser;
 
-	public LoxFunction(Stmt.Function declaration, Environment closure, boolean isInitialiser) {
+	public LoxFunction(Stmt.Function declaration, Environment closure, IntNodeTable locals, Tiers tiers,
+			boolean isInitialiser) {
 		this.isInitialiser = isInitialiser;
 		this.closure = closure;
+		this.locals = locals;
+		this.tiers = tiers;
 		this.declaration = declaration;
 	}
 
+	// Whether this was made from the declaration with that name token, which
+	// rewriting the declaration keeps
+	boolean declaredAs(Token name) {
+		return declaration.name == name;
+	}
+
 	@Override
 	public int arity() {
 		return declaration.params.size();
@@ -21,21 +32,41 @@ class LoxFunction implements LoxCallable {
 
 	@Override
 	public Object call(Interpreter interpreter, List<Object> args) {
+		return call(interpreter, closure, args);
+	}
+
+	// Calls a method on an instance without binding it first
+	Object invoke(Interpreter interpreter, LoxInstance instance, List<Object> args) {
+		Environment env = new Environment(closure);
+		env.define(Symbol.THIS, instance);
+		return call(interpreter, env, args);
+	}
+
+	private Object call(Interpreter interpreter, Environment closure, List<Object> args) {
+		Stmt.Function declaration = this.declaration;
+		IntNodeTable locals = this.locals;
+		if (tiers != null) {
+			declaration = tiers.declaration(declaration);
+			if (declaration != this.declaration) {
+				locals = tiers.locals();
+			}
+		}
+
 		Environment env = new Environment(closure);
 		for (int i = 0; i < declaration.params.size(); i++) {
-			env.define(declaration.params.get(i).lexeme, args.get(i));
+			env.define(declaration.params.get(i).symbol, args.get(i));
 		}
 
 		try {
-			interpreter.executeBlock(declaration.body, env);
+			interpreter.executeBlock(declaration.body, env, locals, tiers);
 		} catch (Return returnValue) {
 			if (isInitialiser)
-				return closure.getAt(0, "this");
+				return closure.getAt(0, Symbol.THIS);
 			return returnValue.value;
 		}
 
 		if (isInitialiser)
-			return closure.getAt(0, "this");
+			return closure.getAt(0, Symbol.THIS);
 		return null;
 	}
 
@@ -46,7 +77,7 @@ class LoxFunction implements LoxCallable {
 
 	LoxFunction bind(LoxInstance instance) {
 		Environment env = new Environment(closure);
-		env.define("this", instance);
-		return new LoxFunction(declaration, env, isInitialiser);
+		env.define(Symbol.THIS, instance);
+		return new LoxFunction(declaration, env, locals, tiers, isInitialiser);
 	}
 }
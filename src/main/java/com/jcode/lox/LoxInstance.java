@@ -5,26 +5,38 @@ import java.util.Map;
 
 public class LoxInstance {
 	private LoxClass klass;
-	private final Map<String, Object> fields = new HashMap<>();
+	private final Map<Symbol, Object> fields = new HashMap<>();
 
 	LoxInstance(LoxClass klass) {
 		this.klass = klass;
 	}
 
 	Object get(Token name) {
-		if (fields.containsKey(name.lexeme)) {
-			return fields.get(name.lexeme);
+		if (fields.containsKey(name.symbol)) {
+			return fields.get(name.symbol);
 		}
 
-		LoxFunction method = klass.findMethod(name.lexeme);
+		LoxFunction method = klass.findMethod(name.symbol);
 		if (method != null)
 			return method.bind(this);
 
 		throw new RuntimeError(name, "Undefined property '" + name.lexeme + "'.");
 	}
 
+	// The method to call for name, or null if a field shadows it
+	LoxFunction method(Token name) {
+		if (fields.containsKey(name.symbol))
+			return null;
+
+		LoxFunction method = klass.findMethod(name.symbol);
+		if (method != null)
+			return method;
+
+		throw new RuntimeError(name, "Undefined property '" + name.lexeme + "'.");
+	}
+
 	Object set(Token name, Object value) {
-		return fields.put(name.lexeme, value);
+		return fields.put(name.symbol, value);
 	}
 
 	@Override
@@ -0,0 +1,247 @@
+package com.jcode.lox;
+
+// A hash map keyed on Lox values, compared as the == operator does. Entries
+// live in parallel arrays in insertion order, which is also iteration order,
+// and an open-addressing table of entry indexes points into them. Number
+// keys are stored unboxed in numberKeys, with the entry's key set to NUMBER.
+//
+// Removing an entry marks it DELETED and leaves its slot in place; both are
+// reclaimed the next time the entries are rebuilt.
+class LoxMap {
+	private static final Object NUMBER = new Object();
+	private static final Object DELETED = new Object();
+
+	// Entry index + 1, or 0 for an empty slot. Always a power of two, and at
+	// least twice the entry capacity.
+	private int[] slots;
+
+	private Object[] keys;
+	private double[] numberKeys;
+	private Object[] values;
+	private int[] hashes;
+
+	private int entries = 0;
+	private int size = 0;
+
+	LoxMap() {
+		this(8);
+	}
+
+	LoxMap(int capacity) {
+		allocate(Math.max(Integer.highestOneBit(Math.max(capacity, 4) - 1) << 1, 4));
+	}
+
+	int size() {
+		return size;
+	}
+
+	Object get(Object key) {
+		if (key instanceof Double)
+			return get((double) key);
+
+		int entry = find(key, hash(key));
+		return entry >= 0 ? values[entry] : null;
+	}
+
+	Object get(double key) {
+		int entry = findNumber(key, hash(key));
+		return entry >= 0 ? values[entry] : null;
+	}
+
+	boolean has(Object key) {
+		if (key instanceof Double)
+			return findNumber((double) key, hash((double) key)) >= 0;
+
+		return find(key, hash(key)) >= 0;
+	}
+
+	void put(Object key, Object value) {
+		if (key instanceof Double) {
+			put((double) key, value);
+			return;
+		}
+
+		int hash = hash(key);
+		int entry = find(key, hash);
+		if (entry >= 0) {
+			values[entry] = value;
+			return;
+		}
+
+		if (entries == keys.length) {
+			grow();
+			entry = find(key, hash);
+		}
+
+		insert(-1 - entry, key, 0, value, hash);
+	}
+
+	void put(double key, Object value) {
+		int hash = hash(key);
+		int entry = findNumber(key, hash);
+		if (entry >= 0) {
+			values[entry] = value;
+			return;
+		}
+
+		if (entries == keys.length) {
+			grow();
+			entry = findNumber(key, hash);
+		}
+
+		insert(-1 - entry, NUMBER, key, value, hash);
+	}
+
+	// Returns the removed value, or nil if the key wasn't there
+	Object remove(Object key) {
+		int entry = key instanceof Double ? findNumber((double) key, hash((double) key)) : find(key, hash(key));
+		if (entry < 0)
+			return null;
+
+		Object value = values[entry];
+		keys[entry] = DELETED;
+		values[entry] = null;
+		size--;
+		return value;
+	}
+
+	LoxArray keys() {
+		LoxArray array = new LoxArray(size);
+		for (int i = 0; i < entries; i++) {
+			if (keys[i] == NUMBER) {
+				array.add(numberKeys[i]);
+			} else if (keys[i] != DELETED) {
+				array.add(keys[i]);
+			}
+		}
+
+		return array;
+	}
+
+	LoxArray values() {
+		LoxArray array = new LoxArray(size);
+		for (int i = 0; i < entries; i++) {
+			if (keys[i] != DELETED) {
+				array.add(values[i]);
+			}
+		}
+
+		return array;
+	}
+
+	private static int hash(Object key) {
+		return key == null ? 0 : mix(key.hashCode());
+	}
+
+	private static int hash(double key) {
+		long bits = Double.doubleToLongBits(key);
+		return mix((int) (bits ^ (bits >>> 32)));
+	}
+
+	// Whole numbers differ only in their high bits, so spread them down
+	private static int mix(int hash) {
+		hash *= 0x9e3779b9;
+		return hash ^ (hash >>> 16);
+	}
+
+	// Returns the entry index, or -1 - slot for the empty slot where it would go
+	private int find(Object key, int hash) {
+		int mask = slots.length - 1;
+		int slot = hash & mask;
+		while (true) {
+			int entry = slots[slot] - 1;
+			if (entry < 0)
+				return -1 - slot;
+
+			Object candidate = keys[entry];
+			if (hashes[entry] == hash && candidate != NUMBER && candidate != DELETED
+					&& Interpreter.isEqual(candidate, key))
+				return entry;
+
+			slot = (slot + 1) & mask;
+		}
+	}
+
+	private int findNumber(double key, int hash) {
+		long bits = Double.doubleToLongBits(key);
+		int mask = slots.length - 1;
+		int slot = hash & mask;
+		while (true) {
+			int entry = slots[slot] - 1;
+			if (entry < 0)
+				return -1 - slot;
+
+			if (hashes[entry] == hash && keys[entry] == NUMBER && Double.doubleToLongBits(numberKeys[entry]) == bits)
+				return entry;
+
+			slot = (slot + 1) & mask;
+		}
+	}
+
+	private void insert(int slot, Object key, double numberKey, Object value, int hash) {
+		keys[entries] = key;
+		numberKeys[entries] = numberKey;
+		values[entries] = value;
+		hashes[entries] = hash;
+		slots[slot] = ++entries;
+		size++;
+	}
+
+	// Drops deleted entries, doubling the capacity unless that frees enough
+	// room
+	private void grow() {
+		Object[] oldKeys = keys;
+		double[] oldNumberKeys = numberKeys;
+		Object[] oldValues = values;
+		int[] oldHashes = hashes;
+		int oldEntries = entries;
+
+		allocate(size * 2 > oldKeys.length ? oldKeys.length * 2 : oldKeys.length);
+
+		int mask = slots.length - 1;
+		for (int i = 0; i < oldEntries; i++) {
+			if (oldKeys[i] == DELETED)
+				continue;
+
+			int slot = oldHashes[i] & mask;
+			while (slots[slot] != 0) {
+				slot = (slot + 1) & mask;
+			}
+
+			keys[entries] = oldKeys[i];
+			numberKeys[entries] = oldNumberKeys[i];
+			values[entries] = oldValues[i];
+			hashes[entries] = oldHashes[i];
+			slots[slot] = ++entries;
+		}
+	}
+
+	private void allocate(int capacity) {
+		slots = new int[capacity * 2];
+		keys = new Object[capacity];
+		numberKeys = new double[capacity];
+		values = new Object[capacity];
+		hashes = new int[capacity];
+		entries = 0;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder text = new StringBuilder("{");
+		boolean first = true;
+		for (int i = 0; i < entries; i++) {
+			if (keys[i] == DELETED)
+				continue;
+
+			if (!first) {
+				text.append(", ");
+			}
+			first = false;
+
+			Object key = keys[i] == NUMBER ? (Object) numberKeys[i] : keys[i];
+			text.append(Interpreter.stringify(key)).append(": ").append(Interpreter.stringify(values[i]));
+		}
+
+		return text.append("}").toString();
+	}
+}
@@ -0,0 +1,114 @@
+package com.jcode.lox;
+
+import java.io.PrintStream;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+// A compiled script: its syntax tree and the resolver's scope depths. Neither
+// changes once compiled, so a program can be run by any number of contexts on
+// different threads at the same time. A tiered program also has the versions
+// of its hot functions and loops that the passes make, built once when first
+// needed.
+public final class LoxProgram {
+	final List<Stmt> statements;
+	final IntNodeTable locals;
+	final Tiers tiers;
+
+	LoxProgram(List<Stmt> statements, IntNodeTable locals) {
+		this(statements, locals, null);
+	}
+
+	private LoxProgram(List<Stmt> statements, IntNodeTable locals, Tiers tiers) {
+		this.statements = Collections.unmodifiableList(statements);
+		this.locals = locals;
+		this.tiers = tiers;
+	}
+
+	static LoxProgram compile(CharSequence source, ErrorReporter reporter) {
+		return compile(source, reporter, Optimisation.DEFAULT);
+	}
+
+	static LoxProgram compile(CharSequence source, ErrorReporter reporter, Set<Optimisation> optimisations) {
+		return compile(source, reporter, optimisations, null);
+	}
+
+	// Returns null if there was a syntax or resolve error, or a bound call
+	// with the wrong number of arguments. Inferred types are printed to
+	// typeDump if it isn't null.
+	static LoxProgram compile(CharSequence source, ErrorReporter reporter, Set<Optimisation> optimisations,
+			PrintStream typeDump) {
+		Scanner scanner = new Scanner(source, reporter);
+		Parser parser = new Parser(scanner, reporter);
+		List<Stmt> statements = parser.parse();
+
+		// Stop if syntax error
+		if (reporter.hadError)
+			return null;
+
+		IntNodeTable locals = new IntNodeTable();
+		Resolver resolver = new Resolver(locals, reporter);
+		resolver.resolve(statements);
+
+		// Stop if resolve error
+		if (reporter.hadError)
+			return null;
+
+		statements = optimise(statements, locals, reporter, optimisations, typeDump, null);
+
+		// Stop if a bound call has the wrong number of arguments
+		if (statements == null)
+			return null;
+
+		return new LoxProgram(statements, locals);
+	}
+
+	// Runs the passes over a resolved program, recording the statements they
+	// replace in replaced if it isn't null. Returns null if a bound call has
+	// the wrong number of arguments.
+	static List<Stmt> optimise(List<Stmt> statements, IntNodeTable locals, ErrorReporter reporter,
+			Set<Optimisation> optimisations, PrintStream typeDump, NodeTable<Stmt> replaced) {
+		if (optimisations.contains(Optimisation.INLINE)) {
+			statements = new Inliner(locals).tracking(replaced).rewrite(statements);
+		}
+
+		if (optimisations.contains(Optimisation.BIND)) {
+			statements = new Binder(locals, reporter).tracking(replaced).rewrite(statements);
+			if (reporter.hadError)
+				return null;
+		}
+
+		if (optimisations.contains(Optimisation.FOLD)) {
+			statements = new Optimiser(locals).tracking(replaced).rewrite(statements);
+		}
+
+		if (optimisations.contains(Optimisation.HOIST)) {
+			statements = new Hoister(locals).tracking(replaced).rewrite(statements);
+		}
+
+		if (optimisations.contains(Optimisation.TYPES)) {
+			statements = new TypeInference(locals, typeDump).tracking(replaced).rewrite(statements);
+		}
+
+		if (optimisations.contains(Optimisation.FUSE)) {
+			statements = new Fuser(locals).tracking(replaced).rewrite(statements);
+		}
+
+		return statements;
+	}
+
+	// A copy of an unoptimised program that starts out running the tree as
+	// resolved and switches its hot functions and loops to what the passes
+	// make of them. The passes are checked for errors now, so a script fails
+	// the same way whether or not the code with the error ever gets hot.
+	// Returns null if they report one.
+	LoxProgram tiered(ErrorReporter reporter, Set<Optimisation> optimisations, Tiers.Policy policy) {
+		if (optimisations.contains(Optimisation.BIND)) {
+			new Binder(locals.copy(), reporter).rewrite(statements);
+			if (reporter.hadError)
+				return null;
+		}
+
+		return new LoxProgram(statements, locals, new Tiers(statements, locals, optimisations, policy));
+	}
+}
@@ -0,0 +1,155 @@
+package com.jcode.lox;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import javax.script.AbstractScriptEngine;
+import javax.script.Bindings;
+import javax.script.Compilable;
+import javax.script.CompiledScript;
+import javax.script.ScriptContext;
+import javax.script.ScriptEngine;
+import javax.script.ScriptEngineFactory;
+import javax.script.ScriptException;
+import javax.script.SimpleBindings;
+
+// A javax.script engine over the interpreter. Each eval runs in a fresh
+// LoxContext whose globals are seeded from the context's bindings, and any
+// engine scope bindings the script reassigns are written back afterwards.
+public class LoxScriptEngine extends AbstractScriptEngine implements Compilable {
+	private final LoxScriptEngineFactory factory;
+
+	LoxScriptEngine(LoxScriptEngineFactory factory) {
+		this.factory = factory;
+	}
+
+	@Override
+	public CompiledScript compile(String script) throws ScriptException {
+		try {
+			return new Compiled(factory.compile(script));
+		} catch (LoxException e) {
+			throw new ScriptException(e.getMessage());
+		}
+	}
+
+	@Override
+	public CompiledScript compile(Reader script) throws ScriptException {
+		return compile(read(script));
+	}
+
+	@Override
+	public Object eval(String script, ScriptContext context) throws ScriptException {
+		return compile(script).eval(context);
+	}
+
+	@Override
+	public Object eval(Reader reader, ScriptContext context) throws ScriptException {
+		return eval(read(reader), context);
+	}
+
+	@Override
+	public Bindings createBindings() {
+		return new SimpleBindings();
+	}
+
+	@Override
+	public ScriptEngineFactory getFactory() {
+		return factory;
+	}
+
+	private static String read(Reader reader) throws ScriptException {
+		StringBuilder source = new StringBuilder();
+		char[] buffer = new char[8192];
+
+		try {
+			int read;
+			while ((read = reader.read(buffer)) != -1) {
+				source.append(buffer, 0, read);
+			}
+		} catch (IOException e) {
+			throw new ScriptException(e);
+		}
+
+		return source.toString();
+	}
+
+	private class Compiled extends CompiledScript {
+		private final LoxProgram program;
+
+		Compiled(LoxProgram program) {
+			this.program = program;
+		}
+
+		// Always returns null, as Lox programs are statements and have no value
+		@Override
+		public Object eval(ScriptContext context) throws ScriptException {
+			// The interpreter writes to a PrintStream, so output is collected
+			// and copied to the context's writers once the script finishes
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			ByteArrayOutputStream err = new ByteArrayOutputStream();
+			LoxContext lox = factory.engine().createContext(new PrintStream(out, true, StandardCharsets.UTF_8),
+					new PrintStream(err, true, StandardCharsets.UTF_8));
+
+			Bindings global = context.getBindings(ScriptContext.GLOBAL_SCOPE);
+			Bindings engine = context.getBindings(ScriptContext.ENGINE_SCOPE);
+			bind(lox, global);
+			bind(lox, engine);
+
+			int exitCode = lox.execute(program);
+
+			if (engine != null) {
+				for (Map.Entry<String, Object> binding : engine.entrySet()) {
+					if (!isEngineKey(binding.getKey())) {
+						binding.setValue(lox.get(binding.getKey()));
+					}
+				}
+			}
+
+			copy(out, context.getWriter());
+			String errors = new String(err.toByteArray(), StandardCharsets.UTF_8);
+			if (exitCode != 0)
+				throw new ScriptException(errors.trim());
+
+			return null;
+		}
+
+		@Override
+		public ScriptEngine getEngine() {
+			return LoxScriptEngine.this;
+		}
+
+		private void bind(LoxContext lox, Bindings bindings) {
+			if (bindings == null)
+				return;
+
+			for (Map.Entry<String, Object> binding : bindings.entrySet()) {
+				// A null binding is left undefined, so the script can declare it
+				if (!isEngineKey(binding.getKey()) && binding.getValue() != null) {
+					lox.set(binding.getKey(), binding.getValue());
+				}
+			}
+		}
+
+		// The engine's own entries, such as javax.script.filename
+		private boolean isEngineKey(String key) {
+			return key.startsWith("javax.script.");
+		}
+
+		private void copy(ByteArrayOutputStream bytes, Writer writer) throws ScriptException {
+			if (bytes.size() == 0 || writer == null)
+				return;
+
+			try {
+				writer.write(new String(bytes.toByteArray(), StandardCharsets.UTF_8));
+				writer.flush();
+			} catch (IOException e) {
+				throw new ScriptException(e);
+			}
+		}
+	}
+}
@@ -0,0 +1,130 @@
+package com.jcode.lox;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.script.ScriptEngine;
+import javax.script.ScriptEngineFactory;
+
+// Registers Lox with javax.script. Engines from one factory share a cache of
+// compiled programs, since a ScriptEngineManager hands out a new engine for
+// each lookup.
+public class LoxScriptEngineFactory implements ScriptEngineFactory {
+	private static final int CACHE_SIZE = 256;
+
+	private final LoxEngine engine = new LoxEngine();
+	private final Map<String, LoxProgram> programs = new LinkedHashMap<String, LoxProgram>(16, 0.75f, true) {
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, LoxProgram> eldest) {
+			return size() > CACHE_SIZE;
+		}
+	};
+
+	// Compiles source once, then hands out the cached program until it falls
+	// out of the cache
+	LoxProgram compile(String source) {
+		synchronized (programs) {
+			LoxProgram program = programs.get(source);
+			if (program != null)
+				return program;
+		}
+
+		// Compile outside the lock, two threads racing on the same source
+		// just both compile it
+		LoxProgram program = engine.compile(source);
+
+		synchronized (programs) {
+			programs.put(source, program);
+		}
+
+		return program;
+	}
+
+	LoxEngine engine() {
+		return engine;
+	}
+
+	@Override
+	public String getEngineName() {
+		return "jlox";
+	}
+
+	@Override
+	public String getEngineVersion() {
+		return "1.0";
+	}
+
+	@Override
+	public List<String> getExtensions() {
+		return Collections.singletonList("lox");
+	}
+
+	@Override
+	public List<String> getMimeTypes() {
+		return Collections.singletonList("application/x-lox");
+	}
+
+	@Override
+	public List<String> getNames() {
+		return Arrays.asList("lox", "Lox", "jlox");
+	}
+
+	@Override
+	public String getLanguageName() {
+		return "Lox";
+	}
+
+	@Override
+	public String getLanguageVersion() {
+		return "1.0";
+	}
+
+	@Override
+	public Object getParameter(String key) {
+		switch (key) {
+			case ScriptEngine.ENGINE:
+				return getEngineName();
+			case ScriptEngine.ENGINE_VERSION:
+				return getEngineVersion();
+			case ScriptEngine.NAME:
+				return getNames().get(0);
+			case ScriptEngine.LANGUAGE:
+				return getLanguageName();
+			case ScriptEngine.LANGUAGE_VERSION:
+				return getLanguageVersion();
+			case "THREADING":
+				// Compiled scripts can be shared, each eval runs in its own context
+				return "MULTITHREADED";
+			default:
+				return null;
+		}
+	}
+
+	@Override
+	public String getMethodCallSyntax(String obj, String m, String... args) {
+		return obj + "." + m + "(" + String.join(", ", args) + ")";
+	}
+
+	@Override
+	public String getOutputStatement(String toDisplay) {
+		return "println(\"" + toDisplay.replace("\"", "") + "\");";
+	}
+
+	@Override
+	public String getProgram(String... statements) {
+		StringBuilder program = new StringBuilder();
+		for (String statement : statements) {
+			program.append(statement).append(";\n");
+		}
+
+		return program.toString();
+	}
+
+	@Override
+	public ScriptEngine getScriptEngine() {
+		return new LoxScriptEngine(this);
+	}
+}
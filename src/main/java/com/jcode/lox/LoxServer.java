@@ -0,0 +1,211 @@
+package com.jcode.lox;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Keeps one JVM warm and runs scripts sent over loopback TCP, each in its own
+// Interpreter on a worker pool.
+//
+// A request is a kind byte ('P' for a script path, 'S' for source text)
+// followed by a length-prefixed UTF-8 string. The response is a series of
+// frames: a stream byte ('1' for stdout, '2' for stderr) and length-prefixed
+// bytes, ending with 'X' and the exit code.
+class LoxServer {
+	static final byte PATH = 'P';
+	static final byte SOURCE = 'S';
+	static final byte STDOUT = '1';
+	static final byte STDERR = '2';
+	static final byte EXIT = 'X';
+
+	// As in sysexits.h, for a script that can't be read
+	private static final int EXIT_NO_INPUT = 66;
+
+	private final int port;
+	private final ExecutorService workers;
+	private final AstCache cache;
+
+	LoxServer(int port, int workers, AstCache cache) {
+		this.port = port;
+		this.workers = Executors.newFixedThreadPool(workers);
+		this.cache = cache;
+	}
+
+	void serve() throws IOException {
+		try (ServerSocket server = new ServerSocket(port, 128, InetAddress.getLoopbackAddress())) {
+			System.out.println("Listening on " + server.getLocalSocketAddress());
+
+			while (true) {
+				Socket socket = server.accept();
+				workers.execute(() -> handle(socket));
+			}
+		} finally {
+			workers.shutdown();
+		}
+	}
+
+	private void handle(Socket socket) {
+		try (Socket connection = socket) {
+			DataInputStream in = new DataInputStream(new BufferedInputStream(connection.getInputStream()));
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(connection.getOutputStream()));
+
+			byte kind = in.readByte();
+			byte[] payload = new byte[in.readInt()];
+			in.readFully(payload);
+			String text = new String(payload, StandardCharsets.UTF_8);
+
+			Frames frames = new Frames(out);
+			PrintStream stdout = new PrintStream(frames.stream(STDOUT));
+			PrintStream stderr = new PrintStream(frames.stream(STDERR));
+
+			int exitCode = run(kind, text, stdout, stderr);
+
+			stdout.flush();
+			stderr.flush();
+			out.writeByte(EXIT);
+			out.writeInt(exitCode);
+			out.flush();
+		} catch (IOException e) {
+			// The client went away, nothing to report to
+		}
+	}
+
+	private int run(byte kind, String text, PrintStream stdout, PrintStream stderr) {
+		ErrorReporter reporter = new ErrorReporter(stderr);
+		Interpreter interpreter = new Interpreter(stdout, new LineInput(InputStream.nullInputStream()), reporter);
+
+		try {
+			if (kind == PATH)
+				return Lox.runScript(Paths.get(text), interpreter, cache);
+
+			Lox.run(text, interpreter);
+			return reporter.exitCode();
+		} catch (IOException e) {
+			stderr.println("Could not read script '" + text + "'.");
+			return EXIT_NO_INPUT;
+		} catch (StackOverflowError e) {
+			stderr.println("Stack overflow.");
+			return 70;
+		} catch (RuntimeException e) {
+			// A bug in the interpreter, so the client still gets an exit code
+			// and the server's log gets the trace
+			stderr.println("Internal error: " + e);
+			e.printStackTrace();
+			return 70;
+		}
+	}
+
+	// Sends a script to a running server, copies its output here, and returns
+	// its exit code
+	static int connect(int port, Path script) throws IOException {
+		try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+			byte[] path = script.toAbsolutePath().toString().getBytes(StandardCharsets.UTF_8);
+			out.writeByte(PATH);
+			out.writeInt(path.length);
+			out.write(path);
+			out.flush();
+
+			DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+			byte[] buffer = new byte[Frames.FRAME_SIZE];
+			while (true) {
+				byte stream = in.readByte();
+				if (stream == EXIT) {
+					System.out.flush();
+					System.err.flush();
+					return in.readInt();
+				}
+
+				int length = in.readInt();
+				if (length > buffer.length) {
+					buffer = new byte[length];
+				}
+				in.readFully(buffer, 0, length);
+
+				(stream == STDOUT ? System.out : System.err).write(buffer, 0, length);
+			}
+		}
+	}
+
+	// Buffers stdout and stderr separately, flushing the other stream before
+	// writing a frame so their relative order is kept
+	private static class Frames {
+		static final int FRAME_SIZE = 8192;
+
+		private final DataOutputStream out;
+		private final FrameStream stdout = new FrameStream(STDOUT);
+		private final FrameStream stderr = new FrameStream(STDERR);
+
+		Frames(DataOutputStream out) {
+			this.out = out;
+		}
+
+		OutputStream stream(byte stream) {
+			return stream == STDOUT ? stdout : stderr;
+		}
+
+		private class FrameStream extends OutputStream {
+			private final byte stream;
+			private final byte[] buffer = new byte[FRAME_SIZE];
+			private int count = 0;
+
+			FrameStream(byte stream) {
+				this.stream = stream;
+			}
+
+			private FrameStream other() {
+				return this == stdout ? stderr : stdout;
+			}
+
+			@Override
+			public void write(int b) throws IOException {
+				if (count == buffer.length)
+					flush();
+
+				other().flush();
+				buffer[count++] = (byte) b;
+			}
+
+			@Override
+			public void write(byte[] bytes, int offset, int length) throws IOException {
+				other().flush();
+
+				while (length > 0) {
+					if (count == buffer.length)
+						flush();
+
+					int n = Math.min(length, buffer.length - count);
+					System.arraycopy(bytes, offset, buffer, count, n);
+					count += n;
+					offset += n;
+					length -= n;
+				}
+			}
+
+			@Override
+			public void flush() throws IOException {
+				if (count == 0)
+					return;
+
+				out.writeByte(stream);
+				out.writeInt(count);
+				out.write(buffer, 0, count);
+				out.flush();
+				count = 0;
+			}
+		}
+	}
+}
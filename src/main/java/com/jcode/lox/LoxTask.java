@@ -0,0 +1,92 @@
+package com.jcode.lox;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+
+// A function running on its own thread, started by spawn(). The thread gets
+// its own Interpreter sharing the spawner's globals, so each task has its own
+// environment and call stack.
+//
+// Arrays, maps and instances aren't synchronised, so tasks that change one
+// while another uses it must hand it over through a channel. A race that
+// breaks one fails the task with an error that join() rethrows, rather than
+// a Java exception that kills the thread.
+class LoxTask {
+	private static final Method OF_VIRTUAL;
+	private static final Method UNSTARTED;
+
+	static {
+		// Virtual threads are looked up by name so this still builds and runs
+		// on JDKs without them, where tasks fall back to platform threads
+		Method ofVirtual = null;
+		Method unstarted = null;
+		try {
+			ofVirtual = Thread.class.getMethod("ofVirtual");
+			unstarted = Class.forName("java.lang.Thread$Builder").getMethod("unstarted", Runnable.class);
+		} catch (ReflectiveOperationException e) {
+			ofVirtual = null;
+			unstarted = null;
+		}
+
+		OF_VIRTUAL = ofVirtual;
+		UNSTARTED = unstarted;
+	}
+
+	private final Thread thread;
+	private Object result;
+	private RuntimeException error;
+
+	LoxTask(Interpreter spawner, LoxCallable function) {
+		Interpreter interpreter = new Interpreter(spawner);
+		this.thread = newThread(() -> {
+			try {
+				result = function.call(interpreter, new ArrayList<>());
+			} catch (RuntimeError | NativeFnError e) {
+				error = e;
+			} catch (StackOverflowError e) {
+				error = new NativeFnError("Stack overflow.");
+			} catch (RuntimeException e) {
+				error = new NativeFnError("Task failed: " + e + ".");
+			}
+		});
+
+		spawner.globals.share();
+		thread.start();
+	}
+
+	// Waits for the task to finish, returning its result or rethrowing its
+	// error in the joining thread
+	Object join() {
+		try {
+			thread.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new NativeFnError("Interrupted while joining task.");
+		}
+
+		if (error != null)
+			throw error;
+
+		return result;
+	}
+
+	private static Thread newThread(Runnable runnable) {
+		if (OF_VIRTUAL != null) {
+			try {
+				return (Thread) UNSTARTED.invoke(OF_VIRTUAL.invoke(null), runnable);
+			} catch (ReflectiveOperationException e) {
+				// Fall through to a platform thread
+			}
+		}
+
+		// Daemon, so tasks that are never joined don't keep the script alive
+		Thread thread = new Thread(runnable, "lox-task");
+		thread.setDaemon(true);
+		return thread;
+	}
+
+	@Override
+	public String toString() {
+		return "<task>";
+	}
+}
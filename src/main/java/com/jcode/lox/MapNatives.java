@@ -0,0 +1,83 @@
+package com.jcode.lox;
+
+import java.util.List;
+
+class MapNatives {
+	static void define(Environment globals) {
+		globals.define("has", new LoxCallable() {
+			@Override
+			public int arity() {
+				return 2;
+			}
+
+			@Override
+			public Object call(Interpreter interpreter, List<Object> args) {
+				return mapArg("has", args.get(0)).has(args.get(1));
+			}
+
+			@Override
+			public String toString() {
+				return "<native fn>";
+			}
+		});
+
+		globals.define("remove", new LoxCallable() {
+			@Override
+			public int arity() {
+				return 2;
+			}
+
+			@Override
+			public Object call(Interpreter interpreter, List<Object> args) {
+				return mapArg("remove", args.get(0)).remove(args.get(1));
+			}
+
+			@Override
+			public String toString() {
+				return "<native fn>";
+			}
+		});
+
+		globals.define("keys", new LoxCallable() {
+			@Override
+			public int arity() {
+				return 1;
+			}
+
+			@Override
+			public Object call(Interpreter interpreter, List<Object> args) {
+				return mapArg("keys", args.get(0)).keys();
+			}
+
+			@Override
+			public String toString() {
+				return "<native fn>";
+			}
+		});
+
+		globals.define("values", new LoxCallable() {
+			@Override
+			public int arity() {
+				return 1;
+			}
+
+			@Override
+			public Object call(Interpreter interpreter, List<Object> args) {
+				return mapArg("values", args.get(0)).values();
+			}
+
+			@Override
+			public String toString() {
+				return "<native fn>";
+			}
+		});
+	}
+
+	private static LoxMap mapArg(String name, Object arg) {
+		if (!(arg instanceof LoxMap)) {
+			throw new NativeFnError("Can only call '" + name + "()' on maps.");
+		}
+
+		return (LoxMap) arg;
+	}
+}
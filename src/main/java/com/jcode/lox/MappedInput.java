@@ -0,0 +1,46 @@
+package com.jcode.lox;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+// Reads a file through a sliding memory-mapped window, so files larger than
+// a single MappedByteBuffer (2 GB) can be read with constant memory
+class MappedInput extends LineInput {
+	private static final long WINDOW_SIZE = 1 << 26;
+
+	private final FileChannel channel;
+	private final long size;
+	private long offset;
+
+	MappedInput(FileChannel channel) throws IOException {
+		super(map(channel, 0));
+		this.channel = channel;
+		this.size = channel.size();
+		this.offset = 0;
+	}
+
+	private static MappedByteBuffer map(FileChannel channel, long offset) throws IOException {
+		long length = Math.min(WINDOW_SIZE, channel.size() - offset);
+		return channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+	}
+
+	@Override
+	protected boolean fill() {
+		if (offset + bytes.limit() >= size)
+			return false;
+
+		try {
+			// Remap from the first unconsumed byte so partial records carry over
+			offset += bytes.position();
+			bytes = map(channel, offset);
+			return true;
+		} catch (IOException e) {
+			throw new NativeFnError("Could not read file: " + e.getMessage());
+		}
+	}
+
+	void close() throws IOException {
+		channel.close();
+	}
+}
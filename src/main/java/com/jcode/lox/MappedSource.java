@@ -0,0 +1,132 @@
+package com.jcode.lox;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// Script source decoded from a memory-mapped file in chunks. Only characters
+// from the last released index onwards are kept, so the scanner never holds
+// more than the current token plus one chunk in memory. The length isn't
+// known until the end has been decoded, so the scanner asks atEnd() instead.
+class MappedSource implements CharSequence {
+	private static final int CHUNK_SIZE = 1 << 16;
+
+	private final ByteBuffer bytes;
+	private final CharsetDecoder decoder;
+
+	private char[] window = new char[CHUNK_SIZE];
+	private int base = 0;
+	private int count = 0;
+	private int released = 0;
+
+	// Set once all the bytes are decoded, then once the decoder is flushed
+	private boolean flushing = false;
+	private boolean exhausted = false;
+
+	private MappedSource(ByteBuffer bytes) {
+		this.bytes = bytes;
+		this.decoder = newDecoder();
+	}
+
+	static MappedSource open(Path path) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			if (channel.size() > Integer.MAX_VALUE) {
+				throw new IOException("Script '" + path + "' is too large.");
+			}
+
+			return new MappedSource(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+		}
+	}
+
+	private static CharsetDecoder newDecoder() {
+		return Charset.defaultCharset().newDecoder()
+				.onMalformedInput(CodingErrorAction.REPLACE)
+				.onUnmappableCharacter(CodingErrorAction.REPLACE);
+	}
+
+	// Characters before index will not be read again
+	void release(int index) {
+		released = Math.max(released, Math.min(index, base + count));
+	}
+
+	// Whether index is past the last character, decoding up to it if needed
+	boolean atEnd(int index) {
+		while (base + count <= index && !exhausted) {
+			decodeChunk();
+		}
+
+		return index >= base + count;
+	}
+
+	// Decodes the rest of the file, so prefer atEnd()
+	@Override
+	public int length() {
+		while (!exhausted) {
+			decodeChunk();
+		}
+
+		return base + count;
+	}
+
+	@Override
+	public char charAt(int index) {
+		ensureDecoded(index + 1);
+		return window[index - base];
+	}
+
+	@Override
+	public CharSequence subSequence(int start, int end) {
+		ensureDecoded(end);
+		return new String(window, start - base, end - start);
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder builder = new StringBuilder();
+		for (int i = base; !atEnd(i); i++) {
+			builder.append(charAt(i));
+		}
+
+		return builder.toString();
+	}
+
+	private void ensureDecoded(int end) {
+		if (end > 0 && atEnd(end - 1)) {
+			throw new IndexOutOfBoundsException("Index " + (end - 1) + " out of bounds for length " + length());
+		}
+	}
+
+	private void decodeChunk() {
+		int keep = base + count - released;
+
+		if (count + CHUNK_SIZE > window.length) {
+			char[] target = window;
+			if (keep + CHUNK_SIZE > window.length) {
+				target = new char[Math.max(window.length * 2, keep + CHUNK_SIZE)];
+			}
+
+			System.arraycopy(window, released - base, target, 0, keep);
+			window = target;
+			base = released;
+			count = keep;
+		}
+
+		CharBuffer chars = CharBuffer.wrap(window, count, window.length - count);
+		CoderResult result = flushing ? decoder.flush(chars) : decoder.decode(bytes, chars, true);
+		if (!flushing && result.isUnderflow()) {
+			flushing = true;
+			result = decoder.flush(chars);
+		}
+
+		exhausted = flushing && result.isUnderflow();
+
+		count = chars.position();
+	}
+}
@@ -0,0 +1,12 @@
+package com.jcode.lox;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Base of Expr and Stmt. Each node takes the next id when it's made, so the
+// nodes of one program have ids close together and data about them can be
+// kept in arrays indexed by id instead of maps keyed by node.
+abstract class Node {
+	private static final AtomicInteger ids = new AtomicInteger();
+
+	final int id = ids.getAndIncrement();
+}
@@ -0,0 +1,35 @@
+package com.jcode.lox;
+
+// Profiling counters for the nodes with ids in a fixed range, which any
+// number of threads can bump at once. Counts from racing threads can be lost,
+// which doesn't matter for deciding what's hot, but every count up to the
+// highest is returned by some increment.
+final class NodeCounters {
+	private final int base;
+	private final int[] counts;
+
+	NodeCounters(int first, int last) {
+		this.base = first;
+		this.counts = new int[Math.max(0, last - first + 1)];
+	}
+
+	int get(Node node) {
+		int index = node.id - base;
+		return index >= 0 && index < counts.length ? counts[index] : 0;
+	}
+
+	// The node's new count, or 0 if it's outside the range. Counts stop at
+	// Integer.MAX_VALUE.
+	int increment(Node node) {
+		int index = node.id - base;
+		if (index < 0 || index >= counts.length)
+			return 0;
+
+		int count = counts[index];
+		if (count != Integer.MAX_VALUE) {
+			counts[index] = ++count;
+		}
+
+		return count;
+	}
+}
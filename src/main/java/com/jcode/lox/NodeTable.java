@@ -0,0 +1,56 @@
+package com.jcode.lox;
+
+import java.util.Arrays;
+
+// A value for each node, in an array covering the ids from the lowest to the
+// highest node put in it. A table is filled on one thread, and can be read
+// from any number once it's been published.
+final class NodeTable<T> {
+	private int base = 0;
+	private Object[] values = new Object[0];
+
+	// Null for a node without a value
+	@SuppressWarnings("unchecked")
+	T get(Node node) {
+		int index = node.id - base;
+		return index >= 0 && index < values.length ? (T) values[index] : null;
+	}
+
+	boolean contains(Node node) {
+		return get(node) != null;
+	}
+
+	void put(Node node, T value) {
+		int index = index(node);
+		values[index] = value;
+	}
+
+	NodeTable<T> copy() {
+		NodeTable<T> copy = new NodeTable<>();
+		copy.base = base;
+		copy.values = values.clone();
+		return copy;
+	}
+
+	// Grows the array to cover the node's id
+	private int index(Node node) {
+		if (values.length == 0) {
+			base = node.id;
+			values = new Object[16];
+		}
+
+		int index = node.id - base;
+		if (index < 0) {
+			int shift = Math.max(-index, values.length);
+			Object[] grown = new Object[values.length + shift];
+			System.arraycopy(values, 0, grown, shift, values.length);
+			values = grown;
+			base -= shift;
+			index += shift;
+		} else if (index >= values.length) {
+			values = Arrays.copyOf(values, Math.max(index + 1, values.length * 2));
+		}
+
+		return index;
+	}
+}
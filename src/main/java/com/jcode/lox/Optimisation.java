@@ -0,0 +1,31 @@
+package com.jcode.lox;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+
+// Passes that run over a program between resolving and interpreting,
+// chosen with --optimise=<pass,...> or --optimise=none. HOIST is off by
+// default.
+enum Optimisation {
+	INLINE, BIND, FOLD, HOIST, TYPES, FUSE;
+
+	static final Set<Optimisation> DEFAULT = Collections.unmodifiableSet(EnumSet.of(INLINE, BIND, FOLD, TYPES, FUSE));
+
+	// Returns null if a name isn't a known pass
+	static Set<Optimisation> parse(String names) {
+		Set<Optimisation> passes = EnumSet.noneOf(Optimisation.class);
+		if (names.equals("none"))
+			return passes;
+
+		for (String name : names.split(",")) {
+			try {
+				passes.add(valueOf(name.trim().toUpperCase()));
+			} catch (IllegalArgumentException e) {
+				return null;
+			}
+		}
+
+		return passes;
+	}
+}
@@ -0,0 +1,240 @@
+package com.jcode.lox;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.jcode.lox.Expr.Binary;
+import com.jcode.lox.Expr.Grouping;
+import com.jcode.lox.Expr.Literal;
+import com.jcode.lox.Expr.Logical;
+import com.jcode.lox.Expr.Ternary;
+import com.jcode.lox.Expr.Unary;
+import com.jcode.lox.Stmt.Break;
+import com.jcode.lox.Stmt.Continue;
+import com.jcode.lox.Stmt.Expression;
+import com.jcode.lox.Stmt.If;
+import com.jcode.lox.Stmt.Return;
+import com.jcode.lox.Stmt.While;
+
+// Folds constant expressions and removes dead code from a resolved program.
+// Anything that would fail at runtime, such as dividing by zero, is left
+// alone so it still does.
+//
+// A While whose condition folds to a truthy constant is given a null
+// condition, which the interpreter treats as looping forever.
+class Optimiser extends AstRewriter {
+	Optimiser(IntNodeTable locals) {
+		super(locals);
+	}
+
+	// Also drops anything after a return, break or continue
+	@Override
+	protected List<Stmt> stmts(List<Stmt> stmts) {
+		List<Stmt> optimised = null;
+		for (int i = 0; i < stmts.size(); i++) {
+			Stmt stmt = stmt(stmts.get(i));
+			if (optimised == null && stmt != stmts.get(i)) {
+				optimised = new ArrayList<>(stmts.subList(0, i));
+			}
+
+			if (optimised != null && stmt != null) {
+				optimised.add(stmt);
+			}
+
+			if (stmt instanceof Return || stmt instanceof Break || stmt instanceof Continue) {
+				if (optimised == null && i + 1 < stmts.size()) {
+					optimised = new ArrayList<>(stmts.subList(0, i + 1));
+				}
+				break;
+			}
+		}
+
+		return optimised == null ? stmts : optimised;
+	}
+
+	private static boolean isConstant(Expr expr) {
+		return expr instanceof Literal;
+	}
+
+	private static Object value(Expr expr) {
+		return ((Literal) expr).value;
+	}
+
+	@Override
+	public Expr visitTernaryExpr(Ternary expr) {
+		Expr left = expr(expr.left);
+		if (isConstant(left))
+			return expr(Interpreter.isTruthy(value(left)) ? expr.middle : expr.right);
+
+		Expr middle = expr(expr.middle);
+		Expr right = expr(expr.right);
+		if (left == expr.left && middle == expr.middle && right == expr.right)
+			return expr;
+
+		return new Ternary(left, expr.op1, middle, expr.op2, right);
+	}
+
+	@Override
+	public Expr visitBinaryExpr(Binary expr) {
+		Expr rewritten = super.visitBinaryExpr(expr);
+		if (!(rewritten instanceof Binary))
+			return rewritten;
+
+		Binary binary = (Binary) rewritten;
+		if (isConstant(binary.left) && isConstant(binary.right)) {
+			Object folded = fold(binary.operator.type, value(binary.left), value(binary.right));
+			if (folded != null)
+				return new Literal(folded);
+		}
+
+		return binary;
+	}
+
+	// Returns null when the operation can't be folded, either because it
+	// would fail at runtime or because its result is nil
+	private static Object fold(TokenType operator, Object left, Object right) {
+		switch (operator) {
+			case EQUAL_EQUAL:
+				return Interpreter.isEqual(left, right);
+			case BANG_EQUAL:
+				return !Interpreter.isEqual(left, right);
+			default:
+				break;
+		}
+
+		if (left instanceof String && right instanceof String) {
+			String a = (String) left;
+			String b = (String) right;
+			switch (operator) {
+				case PLUS:
+				case PLUS_EQUAL:
+					return a + b;
+				case GREATER:
+					return a.compareTo(b) > 0;
+				case GREATER_EQUAL:
+					return a.compareTo(b) >= 0;
+				case LESS:
+					return a.compareTo(b) < 0;
+				case LESS_EQUAL:
+					return a.compareTo(b) <= 0;
+				default:
+					return null;
+			}
+		}
+
+		if (!(left instanceof Double) || !(right instanceof Double))
+			return null;
+
+		double a = (double) left;
+		double b = (double) right;
+		switch (operator) {
+			case PLUS:
+			case PLUS_EQUAL:
+				return a + b;
+			case MINUS:
+			case MINUS_EQUAL:
+				return a - b;
+			case STAR:
+			case STAR_EQUAL:
+				return a * b;
+			case SLASH:
+			case SLASH_EQUAL:
+				return b == 0 ? null : a / b;
+			case GREATER:
+				return a > b;
+			case GREATER_EQUAL:
+				return a >= b;
+			case LESS:
+				return a < b;
+			case LESS_EQUAL:
+				return a <= b;
+			default:
+				return null;
+		}
+	}
+
+	@Override
+	public Expr visitGroupingExpr(Grouping expr) {
+		return expr(expr.expression);
+	}
+
+	@Override
+	public Expr visitLogicalExpr(Logical expr) {
+		Expr left = expr(expr.left);
+		if (isConstant(left)) {
+			boolean truthy = Interpreter.isTruthy(value(left));
+			if (expr.operator.type == TokenType.OR)
+				return truthy ? left : expr(expr.right);
+
+			return truthy ? expr(expr.right) : left;
+		}
+
+		Expr right = expr(expr.right);
+		if (left == expr.left && right == expr.right)
+			return expr;
+
+		return new Logical(left, expr.operator, right);
+	}
+
+	@Override
+	public Expr visitUnaryExpr(Unary expr) {
+		Expr rewritten = super.visitUnaryExpr(expr);
+		if (!(rewritten instanceof Unary))
+			return rewritten;
+
+		Unary unary = (Unary) rewritten;
+		if (isConstant(unary.right)) {
+			Object value = value(unary.right);
+			if (unary.operator.type == TokenType.BANG)
+				return new Literal(!Interpreter.isTruthy(value));
+			if (unary.operator.type == TokenType.MINUS && value instanceof Double)
+				return new Literal(-(double) value);
+		}
+
+		return unary;
+	}
+
+	// An expression statement with no side effects is dropped
+	@Override
+	public Stmt visitExpressionStmt(Expression stmt) {
+		Expr expression = expr(stmt.expression);
+		if (isConstant(expression))
+			return null;
+
+		if (expression == stmt.expression)
+			return stmt;
+
+		return new Expression(expression);
+	}
+
+	@Override
+	public Stmt visitIfStmt(If stmt) {
+		Expr condition = expr(stmt.condition);
+		if (isConstant(condition))
+			return stmt(Interpreter.isTruthy(value(condition)) ? stmt.thenBranch : stmt.elseBranch);
+
+		Stmt thenBranch = stmt(stmt.thenBranch);
+		Stmt elseBranch = stmt(stmt.elseBranch);
+		if (condition == stmt.condition && thenBranch == stmt.thenBranch && elseBranch == stmt.elseBranch)
+			return stmt;
+
+		return new If(condition, required(thenBranch), elseBranch);
+	}
+
+	@Override
+	public Stmt visitWhileStmt(While stmt) {
+		Expr condition = expr(stmt.condition);
+		if (isConstant(condition)) {
+			if (!Interpreter.isTruthy(value(condition)))
+				return null;
+
+			condition = null;
+		}
+
+		Stmt body = required(stmt(stmt.body));
+		if (condition == stmt.condition && body == stmt.body)
+			return stmt;
+
+		return new While(condition, body);
+	}
+}
@@ -0,0 +1,80 @@
+package com.jcode.lox;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Counts how often each kind of node is run directly under each other kind,
+// to show which pairs are worth fusing. The body of a function counts as
+// under the call that ran it. Only the interpreter that runs the script is
+// profiled, not those running its tasks.
+class PairProfiler extends Interpreter {
+	private final Map<String, Long> pairs = new HashMap<>();
+
+	// The node being run, or null at the top level
+	private Object parent = null;
+
+	PairProfiler(PrintStream out, LineInput input, ErrorReporter reporter) {
+		super(out, input, reporter);
+	}
+
+	@Override
+	Object evaluate(Expr expr) {
+		Object enclosing = enter(expr);
+		try {
+			return super.evaluate(expr);
+		} finally {
+			parent = enclosing;
+		}
+	}
+
+	@Override
+	void execute(Stmt stmt) {
+		Object enclosing = enter(stmt);
+		try {
+			super.execute(stmt);
+		} finally {
+			parent = enclosing;
+		}
+	}
+
+	private Object enter(Object node) {
+		pairs.merge(kind(parent) + " > " + kind(node), 1L, Long::sum);
+
+		Object enclosing = parent;
+		parent = node;
+		return enclosing;
+	}
+
+	private static String kind(Object node) {
+		if (node == null)
+			return "(top)";
+
+		// Binary nodes are told apart by operator, as that decides what fuses
+		String kind = node.getClass().getSimpleName();
+		if (node instanceof Expr.Binary)
+			return kind + " " + ((Expr.Binary) node).operator.lexeme;
+		if (node instanceof Expr.NumericBinary)
+			return kind + " " + ((Expr.NumericBinary) node).operator.lexeme;
+
+		return kind;
+	}
+
+	// Prints each pair with its count and share of the total, most frequent
+	// first
+	void print(PrintStream out) {
+		List<Map.Entry<String, Long>> sorted = new ArrayList<>(pairs.entrySet());
+		sorted.sort((a, b) -> Long.compare(b.getValue(), a.getValue()));
+
+		long total = 0;
+		for (Map.Entry<String, Long> pair : sorted) {
+			total += pair.getValue();
+		}
+
+		for (Map.Entry<String, Long> pair : sorted) {
+			out.printf("%12d %6.2f%%  %s%n", pair.getValue(), 100.0 * pair.getValue() / total, pair.getKey());
+		}
+	}
+}
@@ -0,0 +1,201 @@
+package com.jcode.lox;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+// Runs a Lox callback over an array on the common fork-join pool. Arrays are
+// split into fixed-size chunks that don't depend on the number of cores, and
+// each chunk runs in its own Interpreter sharing the caller's globals. Results
+// are assembled in array order, so output matches a sequential loop.
+class ParallelNatives {
+	private static final int CHUNK_SIZE = 1024;
+
+	static void define(Environment globals) {
+		globals.define("parallelMap", new LoxCallable() {
+			@Override
+			public int arity() {
+				return 2;
+			}
+
+			@Override
+			public Object call(Interpreter interpreter, List<Object> args) {
+				LoxArray array = ArrayNatives.arrayArg("parallelMap", args.get(0));
+				LoxCallable function = callbackArg("parallelMap", args.get(1), 1);
+
+				Object[] results = new Object[array.size()];
+				run(interpreter, array, (worker, start, end) -> {
+					List<Object> callArgs = new ArrayList<>(1);
+					callArgs.add(null);
+					for (int i = start; i < end; i++) {
+						callArgs.set(0, array.get(i));
+						results[i] = function.call(worker, callArgs);
+					}
+				});
+
+				LoxArray mapped = new LoxArray(results.length);
+				for (Object result : results) {
+					mapped.add(result);
+				}
+
+				return mapped;
+			}
+
+			@Override
+			public String toString() {
+				return "<native fn>";
+			}
+		});
+
+		globals.define("parallelFilter", new LoxCallable() {
+			@Override
+			public int arity() {
+				return 2;
+			}
+
+			@Override
+			public Object call(Interpreter interpreter, List<Object> args) {
+				LoxArray array = ArrayNatives.arrayArg("parallelFilter", args.get(0));
+				LoxCallable function = callbackArg("parallelFilter", args.get(1), 1);
+
+				boolean[] keep = new boolean[array.size()];
+				run(interpreter, array, (worker, start, end) -> {
+					List<Object> callArgs = new ArrayList<>(1);
+					callArgs.add(null);
+					for (int i = start; i < end; i++) {
+						callArgs.set(0, array.get(i));
+						keep[i] = Interpreter.isTruthy(function.call(worker, callArgs));
+					}
+				});
+
+				LoxArray filtered = new LoxArray(0);
+				for (int i = 0; i < keep.length; i++) {
+					if (keep[i]) {
+						filtered.add(array.get(i));
+					}
+				}
+
+				return filtered;
+			}
+
+			@Override
+			public String toString() {
+				return "<native fn>";
+			}
+		});
+
+		// Each chunk is folded from its own first element, then the chunks'
+		// results are folded in order from the initial value, which is used
+		// once as in a sequential loop. The callback should be associative.
+		globals.define("parallelReduce", new LoxCallable() {
+			@Override
+			public int arity() {
+				return 3;
+			}
+
+			@Override
+			public Object call(Interpreter interpreter, List<Object> args) {
+				LoxArray array = ArrayNatives.arrayArg("parallelReduce", args.get(0));
+				LoxCallable function = callbackArg("parallelReduce", args.get(1), 2);
+				Object initial = args.get(2);
+
+				Object[] partials = new Object[chunks(array.size())];
+				run(interpreter, array, (worker, start, end) -> {
+					List<Object> callArgs = new ArrayList<>(Arrays.asList(array.get(start), null));
+					for (int i = start + 1; i < end; i++) {
+						callArgs.set(1, array.get(i));
+						callArgs.set(0, function.call(worker, callArgs));
+					}
+					partials[start / CHUNK_SIZE] = callArgs.get(0);
+				});
+
+				List<Object> callArgs = new ArrayList<>(Arrays.asList(initial, null));
+				for (Object partial : partials) {
+					callArgs.set(1, partial);
+					callArgs.set(0, function.call(interpreter, callArgs));
+				}
+
+				return callArgs.get(0);
+			}
+
+			@Override
+			public String toString() {
+				return "<native fn>";
+			}
+		});
+	}
+
+	private interface Chunk {
+		void run(Interpreter worker, int start, int end);
+	}
+
+	private static int chunks(int size) {
+		return (size + CHUNK_SIZE - 1) / CHUNK_SIZE;
+	}
+
+	// Errors are collected per chunk and the one from the earliest chunk is
+	// rethrown, so a failing script reports the same error every run
+	private static void run(Interpreter interpreter, LoxArray array, Chunk chunk) {
+		int chunks = chunks(array.size());
+		if (chunks == 0)
+			return;
+
+		interpreter.globals.share();
+		RuntimeException[] errors = new RuntimeException[chunks];
+		ForkJoinPool.commonPool().invoke(new Chunks(interpreter, array.size(), chunk, errors, 0, chunks));
+
+		for (RuntimeException error : errors) {
+			if (error != null)
+				throw error;
+		}
+	}
+
+	private static class Chunks extends RecursiveAction {
+		private final Interpreter interpreter;
+		private final int size;
+		private final Chunk chunk;
+		private final RuntimeException[] errors;
+		private final int from;
+		private final int to;
+
+		Chunks(Interpreter interpreter, int size, Chunk chunk, RuntimeException[] errors, int from, int to) {
+			this.interpreter = interpreter;
+			this.size = size;
+			this.chunk = chunk;
+			this.errors = errors;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from > 1) {
+				int middle = (from + to) >>> 1;
+				invokeAll(new Chunks(interpreter, size, chunk, errors, from, middle),
+						new Chunks(interpreter, size, chunk, errors, middle, to));
+				return;
+			}
+
+			try {
+				chunk.run(new Interpreter(interpreter), from * CHUNK_SIZE, Math.min(size, to * CHUNK_SIZE));
+			} catch (RuntimeError | NativeFnError e) {
+				errors[from] = e;
+			} catch (StackOverflowError e) {
+				errors[from] = new NativeFnError("Stack overflow.");
+			} catch (RuntimeException e) {
+				errors[from] = new NativeFnError("Parallel callback failed: " + e + ".");
+			}
+		}
+	}
+
+	private static LoxCallable callbackArg(String name, Object arg, int arity) {
+		if (!(arg instanceof LoxCallable) || ((LoxCallable) arg).arity() != arity) {
+			throw new NativeFnError("Callback to '" + name + "()' must take " + arity
+					+ (arity == 1 ? " argument." : " arguments."));
+		}
+
+		return (LoxCallable) arg;
+	}
+}
@@ -8,11 +8,26 @@ public class Parser {
 	private static class ParseError extends RuntimeException {
 	}
 
-	private final List<Token> tokens;
+	private static final int BATCH_SIZE = 1024;
+
+	private final Scanner scanner;
+	private final TokenBuffer tokens;
+	private final ErrorReporter reporter;
 	private int current = 0;
 
-	Parser(List<Token> tokens) {
+	// Pulls tokens from the scanner in batches, keeping only a window of them
+	Parser(Scanner scanner, ErrorReporter reporter) {
+		this.scanner = scanner;
+		this.tokens = new TokenBuffer();
+		this.reporter = reporter;
+		scanner.scan(tokens, BATCH_SIZE);
+	}
+
+	// Parses an already scanned buffer
+	Parser(TokenBuffer tokens, ErrorReporter reporter) {
+		this.scanner = null;
 		this.tokens = tokens;
+		this.reporter = reporter;
 	}
 
 	public List<Stmt> parse() {
@@ -254,6 +269,11 @@ public class Parser {
 			} else if (expr instanceof Expr.Get) {
 				Expr.Get get = (Expr.Get) expr;
 				return new Expr.Set(get.object, get.name, value);
+			} else if (expr instanceof Expr.Index) {
+				// The IndexSet applies a compound operator itself, so the object
+				// and index are only evaluated once
+				Expr.Index index = (Expr.Index) expr;
+				return new Expr.IndexSet(index.object, index.bracket, index.index, op, value);
 			}
 
 			error(op, "Invalid assignment target.");
@@ -367,6 +387,10 @@ public class Parser {
 			} else if (match(TokenType.DOT)) {
 				Token name = consume(TokenType.IDENTIFIER, "Expect property name after '.'.");
 				expr = new Expr.Get(expr, name);
+			} else if (match(TokenType.LEFT_BRACKET)) {
+				Expr index = expression();
+				Token bracket = consume(TokenType.RIGHT_BRACKET, "Expect ']' after index.");
+				expr = new Expr.Index(expr, bracket, index);
 			} else {
 				break;
 			}
@@ -419,6 +443,33 @@ public class Parser {
 			return new Expr.Grouping(expr);
 		}
 
+		if (match(TokenType.LEFT_BRACKET)) {
+			List<Expr> elements = new ArrayList<>();
+			if (!check(TokenType.RIGHT_BRACKET)) {
+				do {
+					elements.add(expression());
+				} while (match(TokenType.COMMA));
+			}
+
+			Token bracket = consume(TokenType.RIGHT_BRACKET, "Expect ']' after array elements.");
+			return new Expr.Array(bracket, elements);
+		}
+
+		if (match(TokenType.LEFT_BRACE)) {
+			List<Expr> keys = new ArrayList<>();
+			List<Expr> values = new ArrayList<>();
+			if (!check(TokenType.RIGHT_BRACE)) {
+				do {
+					keys.add(expression());
+					consume(TokenType.COLON, "Expect ':' after map key.");
+					values.add(expression());
+				} while (match(TokenType.COMMA));
+			}
+
+			Token brace = consume(TokenType.RIGHT_BRACE, "Expect '}' after map entries.");
+			return new Expr.Dictionary(brace, keys, values);
+		}
+
 		throw error(peek(), "Expect expression.");
 	}
 
@@ -430,17 +481,17 @@ public class Parser {
 	}
 
 	private ParseError error(Token token, String message) {
-		Lox.error(token, message);
+		reporter.error(token, message);
 		return new ParseError();
 	}
 
 	private void synchronise() {
 		advance();
 		while (!isAtEnd()) {
-			if (previous().type == TokenType.SEMICOLON)
+			if (tokens.type(current - 1) == TokenType.SEMICOLON)
 				return;
 
-			switch (peek().type) {
+			switch (tokens.type(current)) {
 				case CLASS:
 				case FOR:
 				case FUN:
@@ -471,24 +522,30 @@ public class Parser {
 	private boolean check(TokenType type) {
 		if (isAtEnd())
 			return false;
-		return peek().type == type;
+		return tokens.type(current) == type;
 	}
 
 	private Token peek() {
-		return tokens.get(current);
+		return tokens.token(current);
 	}
 
 	private Token advance() {
-		if (!isAtEnd())
+		if (!isAtEnd()) {
 			current++;
+			if (current == tokens.size() && scanner != null) {
+				tokens.retainLast();
+				scanner.scan(tokens, BATCH_SIZE);
+				current = 1;
+			}
+		}
 		return previous();
 	}
 
 	private boolean isAtEnd() {
-		return peek().type == TokenType.EOF;
+		return tokens.type(current) == TokenType.EOF;
 	}
 
 	private Token previous() {
-		return tokens.get(current - 1);
+		return tokens.token(current - 1);
 	}
 }
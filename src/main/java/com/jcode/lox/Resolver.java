@@ -5,13 +5,26 @@ import java.util.List;
 import java.util.Map;
 import java.util.Stack;
 
+import com.jcode.lox.Expr.Array;
 import com.jcode.lox.Expr.Assign;
 import com.jcode.lox.Expr.Binary;
+import com.jcode.lox.Expr.Bound;
 import com.jcode.lox.Expr.Call;
+import com.jcode.lox.Expr.Dictionary;
 import com.jcode.lox.Expr.Get;
+import com.jcode.lox.Expr.GetThis;
 import com.jcode.lox.Expr.Grouping;
+import com.jcode.lox.Expr.Hoisted;
+import com.jcode.lox.Expr.Increment;
+import com.jcode.lox.Expr.Index;
+import com.jcode.lox.Expr.IndexSet;
+import com.jcode.lox.Expr.Inline;
+import com.jcode.lox.Expr.Invoke;
 import com.jcode.lox.Expr.Literal;
+import com.jcode.lox.Expr.LocalCompare;
 import com.jcode.lox.Expr.Logical;
+import com.jcode.lox.Expr.Negate;
+import com.jcode.lox.Expr.NumericBinary;
 import com.jcode.lox.Expr.Set;
 import com.jcode.lox.Expr.Super;
 import com.jcode.lox.Expr.Ternary;
@@ -24,21 +37,24 @@ import com.jcode.lox.Stmt.Class;
 import com.jcode.lox.Stmt.Continue;
 import com.jcode.lox.Stmt.Expression;
 import com.jcode.lox.Stmt.Function;
+import com.jcode.lox.Stmt.Hoist;
 import com.jcode.lox.Stmt.If;
 import com.jcode.lox.Stmt.Return;
 import com.jcode.lox.Stmt.Var;
 import com.jcode.lox.Stmt.While;
 
 public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
-	private final Interpreter interpreter;
-	private final Stack<HashMap<String, Boolean>> scopes = new Stack<>();
+	private final IntNodeTable locals;
+	private final ErrorReporter reporter;
+	private Stack<HashMap<Symbol, Boolean>> scopes = new Stack<>();
 
 	private FunctionType currentFunction = FunctionType.NONE;
 	private ClassType currentClass = ClassType.NONE;
 	private boolean inLoop = false;
 
-	Resolver(Interpreter interpreter) {
-		this.interpreter = interpreter;
+	Resolver(IntNodeTable locals, ErrorReporter reporter) {
+		this.locals = locals;
+		this.reporter = reporter;
 	}
 
 	private enum ClassType {
@@ -52,7 +68,7 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
 	@Override
 	public Void visitBreakStmt(Break stmt) {
 		if (!inLoop) {
-			Lox.error(stmt.keyword, "Can't break outside of a loop.");
+			reporter.error(stmt.keyword, "Can't break outside of a loop.");
 		}
 
 		return null;
@@ -61,7 +77,7 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
 	@Override
 	public Void visitContinueStmt(Continue stmt) {
 		if (!inLoop) {
-			Lox.error(stmt.keyword, "Can't continue outside of a loop.");
+			reporter.error(stmt.keyword, "Can't continue outside of a loop.");
 		}
 
 		return null;
@@ -92,12 +108,12 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
 	@Override
 	public Void visitReturnStmt(Return stmt) {
 		if (currentFunction == FunctionType.NONE) {
-			Lox.error(stmt.keyword, "Can't return from top-level code.");
+			reporter.error(stmt.keyword, "Can't return from top-level code.");
 		}
 
 		if (stmt.value != null) {
 			if (currentFunction == FunctionType.INITIALISER) {
-				Lox.error(stmt.keyword, "Can't return a value from an initialiser");
+				reporter.error(stmt.keyword, "Can't return a value from an initialiser");
 			}
 			resolve(stmt.value);
 		}
@@ -116,7 +132,8 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
 
 	@Override
 	public Void visitWhileStmt(While stmt) {
-		resolve(stmt.condition);
+		if (stmt.condition != null)
+			resolve(stmt.condition);
 
 		inLoop = true;
 		resolve(stmt.body);
@@ -125,6 +142,23 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
 		return null;
 	}
 
+	@Override
+	public Void visitHoistStmt(Hoist stmt) {
+		for (Token slot : stmt.slots) {
+			define(slot);
+		}
+
+		resolve(stmt.loop);
+		return null;
+	}
+
+	@Override
+	public Void visitHoistedExpr(Hoisted expr) {
+		resolve(expr.expression);
+		resolveLocal(expr, expr.slot);
+		return null;
+	}
+
 	@Override
 	public Void visitVarStmt(Var stmt) {
 		declare(stmt.name);
@@ -151,6 +185,12 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
 		return null;
 	}
 
+	@Override
+	public Void visitIncrementExpr(Increment expr) {
+		resolveLocal(expr, expr.name);
+		return null;
+	}
+
 	@Override
 	public Void visitBinaryExpr(Binary expr) {
 		resolve(expr.left);
@@ -158,6 +198,20 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
 		return null;
 	}
 
+	@Override
+	public Void visitNumericBinaryExpr(NumericBinary expr) {
+		resolve(expr.left);
+		resolve(expr.right);
+		return null;
+	}
+
+	@Override
+	public Void visitLocalCompareExpr(LocalCompare expr) {
+		resolve(expr.left);
+		resolve(expr.right);
+		return null;
+	}
+
 	@Override
 	public Void visitCallExpr(Call expr) {
 		resolve(expr.callee);
@@ -169,6 +223,28 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
 		return null;
 	}
 
+	@Override
+	public Void visitInvokeExpr(Invoke expr) {
+		resolve(expr.object);
+
+		for (Expr arg : expr.arguments) {
+			resolve(arg);
+		}
+
+		return null;
+	}
+
+	@Override
+	public Void visitBoundExpr(Bound expr) {
+		resolve(expr.callee);
+
+		for (Expr arg : expr.arguments) {
+			resolve(arg);
+		}
+
+		return null;
+	}
+
 	@Override
 	public Void visitGroupingExpr(Grouping expr) {
 		resolve(expr.expression);
@@ -180,6 +256,25 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
 		return null;
 	}
 
+	@Override
+	public Void visitArrayExpr(Array expr) {
+		for (Expr element : expr.elements) {
+			resolve(element);
+		}
+
+		return null;
+	}
+
+	@Override
+	public Void visitDictionaryExpr(Dictionary expr) {
+		for (int i = 0; i < expr.keys.size(); i++) {
+			resolve(expr.keys.get(i));
+			resolve(expr.values.get(i));
+		}
+
+		return null;
+	}
+
 	@Override
 	public Void visitLogicalExpr(Logical expr) {
 		resolve(expr.left);
@@ -189,8 +284,8 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
 
 	@Override
 	public Void visitVariableExpr(Variable expr) {
-		if (!scopes.isEmpty() && scopes.peek().get(expr.name.lexeme) == Boolean.FALSE) {
-			Lox.error(expr.name, "Can't read local variable in its own initialiser.");
+		if (!scopes.isEmpty() && scopes.peek().get(expr.name.symbol) == Boolean.FALSE) {
+			reporter.error(expr.name, "Can't read local variable in its own initialiser.");
 		}
 
 		resolveLocal(expr, expr.name);
@@ -203,6 +298,12 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
 		return null;
 	}
 
+	@Override
+	public Void visitNegateExpr(Negate expr) {
+		resolve(expr.right);
+		return null;
+	}
+
 	public void resolve(List<Stmt> statements) {
 		for (Stmt stmt : statements) {
 			resolve(stmt);
@@ -218,7 +319,7 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
 	}
 
 	private void beginScope() {
-		scopes.push(new HashMap<String, Boolean>());
+		scopes.push(new HashMap<Symbol, Boolean>());
 	}
 
 	private void endScope() {
@@ -229,30 +330,51 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
 		if (scopes.isEmpty())
 			return;
 
-		Map<String, Boolean> scope = scopes.peek();
-		if (scope.containsKey(name.lexeme)) {
-			Lox.error(name, "Already a variable with this name in this scope.");
+		Map<Symbol, Boolean> scope = scopes.peek();
+		if (scope.containsKey(name.symbol)) {
+			reporter.error(name, "Already a variable with this name in this scope.");
 		}
 
-		scope.put(name.lexeme, false);
+		scope.put(name.symbol, false);
 	}
 
 	private void define(Token name) {
 		if (scopes.isEmpty())
 			return;
 
-		scopes.peek().put(name.lexeme, true);
+		scopes.peek().put(name.symbol, true);
 	}
 
 	private void resolveLocal(Expr expr, Token name) {
 		for (int i = scopes.size() - 1; i >= 0; i--) {
-			if (scopes.get(i).containsKey(name.lexeme)) {
-				interpreter.resolve(expr, scopes.size() - 1 - i);
+			if (scopes.get(i).containsKey(name.symbol)) {
+				locals.put(expr, scopes.size() - 1 - i);
 				return;
 			}
 		}
 	}
 
+	// An inlined body only sees its parameters and the globals, wherever it
+	// was substituted
+	@Override
+	public Void visitInlineExpr(Inline expr) {
+		for (Expr argument : expr.arguments) {
+			resolve(argument);
+		}
+
+		Stack<HashMap<Symbol, Boolean>> enclosing = scopes;
+		scopes = new Stack<>();
+		beginScope();
+		for (Token param : expr.params) {
+			declare(param);
+			define(param);
+		}
+
+		resolve(expr.body);
+		scopes = enclosing;
+		return null;
+	}
+
 	private void resolveFunction(Stmt.Function function, FunctionType type) {
 		FunctionType enclosingFunction = currentFunction;
 		currentFunction = type;
@@ -277,23 +399,23 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
 		declare(stmt.name);
 		define(stmt.name);
 		if (stmt.superclass != null) {
-			if (stmt.name.lexeme.equals(stmt.superclass.name.lexeme)) {
-				Lox.error(stmt.superclass.name, "A class can't inherit from itself.");
+			if (stmt.name.symbol == stmt.superclass.name.symbol) {
+				reporter.error(stmt.superclass.name, "A class can't inherit from itself.");
 			}
 
 			currentClass = ClassType.SUBCLASS;
 			resolve(stmt.superclass);
 
 			beginScope();
-			scopes.peek().put("super", true);
+			scopes.peek().put(Symbol.SUPER, true);
 		}
 
 		beginScope();
-		scopes.peek().put("this", true);
+		scopes.peek().put(Symbol.THIS, true);
 
 		for (Stmt.Function method : stmt.methods) {
 			FunctionType declaration = FunctionType.METHOD;
-			if (method.name.lexeme.equals("init")) {
+			if (method.name.symbol == Symbol.INIT) {
 				declaration = FunctionType.INITIALISER;
 			}
 
@@ -315,6 +437,12 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
 		return null;
 	}
 
+	@Override
+	public Void visitGetThisExpr(GetThis expr) {
+		resolve(expr.object);
+		return null;
+	}
+
 	@Override
 	public Void visitSetExpr(Set expr) {
 		resolve(expr.value);
@@ -322,10 +450,25 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
 		return null;
 	}
 
+	@Override
+	public Void visitIndexExpr(Index expr) {
+		resolve(expr.object);
+		resolve(expr.index);
+		return null;
+	}
+
+	@Override
+	public Void visitIndexSetExpr(IndexSet expr) {
+		resolve(expr.value);
+		resolve(expr.object);
+		resolve(expr.index);
+		return null;
+	}
+
 	@Override
 	public Void visitThisExpr(This expr) {
 		if (currentClass == ClassType.NONE) {
-			Lox.error(expr.keyword, "Can't use 'this' outside of a class.");
+			reporter.error(expr.keyword, "Can't use 'this' outside of a class.");
 			return null;
 		}
 
@@ -336,9 +479,9 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
 	@Override
 	public Void visitSuperExpr(Super expr) {
 		if (currentClass == ClassType.NONE) {
-			Lox.error(expr.keyword, "Can't use 'super' outside of a class");
+			reporter.error(expr.keyword, "Can't use 'super' outside of a class");
 		} else if (currentClass != ClassType.SUBCLASS) {
-			Lox.error(expr.keyword, "Can't use 'super' in class with no superclass");
+			reporter.error(expr.keyword, "Can't use 'super' in class with no superclass");
 		}
 
 		resolveLocal(expr, expr.keyword);
@@ -2,48 +2,109 @@ package com.jcode.lox;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
-import static java.util.Map.entry;
 
 public class Scanner {
-    private final String source;
-    private final List<Token> tokens = new ArrayList<>();
+    private final CharSequence source;
+    private final MappedSource mapped;
+    private final ErrorReporter reporter;
+    private TokenBuffer buffer;
+    private boolean scannedEof = false;
 
     private int start = 0;
     private int current = 0;
     private int line = 1;
 
-    private static final Map<String, TokenType> keywords = Map.ofEntries(
-            entry("and", TokenType.AND),
-            entry("class", TokenType.CLASS),
-            entry("else", TokenType.ELSE),
-            entry("false", TokenType.FALSE),
-            entry("for", TokenType.FOR),
-            entry("fun", TokenType.FUN),
-            entry("if", TokenType.IF),
-            entry("nil", TokenType.NIL),
-            entry("or", TokenType.OR),
-            entry("return", TokenType.RETURN),
-            entry("super", TokenType.SUPER),
-            entry("this", TokenType.THIS),
-            entry("true", TokenType.TRUE),
-            entry("var", TokenType.VAR),
-            entry("continue", TokenType.CONTINUE),
-            entry("break", TokenType.BREAK),
-            entry("while", TokenType.WHILE));
-
-    Scanner(String source) {
+    // Fixed lexemes by token type, so punctuation and keywords never allocate.
+    // Which keyword to compare against is decided by identifierType().
+    private static final String[] lexemes = new String[TokenType.values().length];
+
+    static {
+        lexemes[TokenType.LEFT_PAREN.ordinal()] = "(";
+        lexemes[TokenType.RIGHT_PAREN.ordinal()] = ")";
+        lexemes[TokenType.LEFT_BRACE.ordinal()] = "{";
+        lexemes[TokenType.RIGHT_BRACE.ordinal()] = "}";
+        lexemes[TokenType.LEFT_BRACKET.ordinal()] = "[";
+        lexemes[TokenType.RIGHT_BRACKET.ordinal()] = "]";
+        lexemes[TokenType.COMMA.ordinal()] = ",";
+        lexemes[TokenType.DOT.ordinal()] = ".";
+        lexemes[TokenType.MINUS.ordinal()] = "-";
+        lexemes[TokenType.MINUS_EQUAL.ordinal()] = "-=";
+        lexemes[TokenType.PLUS.ordinal()] = "+";
+        lexemes[TokenType.PLUS_EQUAL.ordinal()] = "+=";
+        lexemes[TokenType.SLASH.ordinal()] = "/";
+        lexemes[TokenType.SLASH_EQUAL.ordinal()] = "/=";
+        lexemes[TokenType.STAR.ordinal()] = "*";
+        lexemes[TokenType.STAR_EQUAL.ordinal()] = "*=";
+        lexemes[TokenType.SEMICOLON.ordinal()] = ";";
+        lexemes[TokenType.QUESTION.ordinal()] = "?";
+        lexemes[TokenType.COLON.ordinal()] = ":";
+        lexemes[TokenType.BANG.ordinal()] = "!";
+        lexemes[TokenType.BANG_EQUAL.ordinal()] = "!=";
+        lexemes[TokenType.EQUAL.ordinal()] = "=";
+        lexemes[TokenType.EQUAL_EQUAL.ordinal()] = "==";
+        lexemes[TokenType.GREATER.ordinal()] = ">";
+        lexemes[TokenType.GREATER_EQUAL.ordinal()] = ">=";
+        lexemes[TokenType.LESS.ordinal()] = "<";
+        lexemes[TokenType.LESS_EQUAL.ordinal()] = "<=";
+
+        lexemes[TokenType.AND.ordinal()] = "and";
+        lexemes[TokenType.BREAK.ordinal()] = "break";
+        lexemes[TokenType.CLASS.ordinal()] = "class";
+        lexemes[TokenType.CONTINUE.ordinal()] = "continue";
+        lexemes[TokenType.ELSE.ordinal()] = "else";
+        lexemes[TokenType.FALSE.ordinal()] = "false";
+        lexemes[TokenType.FOR.ordinal()] = "for";
+        lexemes[TokenType.FUN.ordinal()] = "fun";
+        lexemes[TokenType.IF.ordinal()] = "if";
+        lexemes[TokenType.NIL.ordinal()] = "nil";
+        lexemes[TokenType.OR.ordinal()] = "or";
+        lexemes[TokenType.RETURN.ordinal()] = "return";
+        lexemes[TokenType.SUPER.ordinal()] = "super";
+        lexemes[TokenType.THIS.ordinal()] = "this";
+        lexemes[TokenType.TRUE.ordinal()] = "true";
+        lexemes[TokenType.VAR.ordinal()] = "var";
+        lexemes[TokenType.WHILE.ordinal()] = "while";
+    }
+
+    Scanner(CharSequence source, ErrorReporter reporter) {
         this.source = source;
+        this.reporter = reporter;
+        this.mapped = source instanceof MappedSource ? (MappedSource) source : null;
     }
 
     public List<Token> scanTokens() {
-        while (!isAtEnd()) {
+        TokenBuffer buffer = new TokenBuffer();
+        while (scan(buffer, Integer.MAX_VALUE) > 0)
+            ;
+
+        List<Token> tokens = new ArrayList<>(buffer.size());
+        for (int i = 0; i < buffer.size(); i++) {
+            tokens.add(buffer.token(i));
+        }
+
+        return tokens;
+    }
+
+    // Appends up to max tokens to the buffer, ending with a single EOF token.
+    // Returns how many were added.
+    public int scan(TokenBuffer buffer, int max) {
+        this.buffer = buffer;
+        int before = buffer.size();
+
+        while (buffer.size() - before < max && !scannedEof) {
+            if (isAtEnd()) {
+                buffer.add(TokenType.EOF, current, 0, line, "");
+                scannedEof = true;
+                break;
+            }
+
             start = current;
+            if (mapped != null)
+                mapped.release(start);
             scanToken();
         }
 
-        tokens.add(new Token(TokenType.EOF, "", null, line));
-        return tokens;
+        return buffer.size() - before;
     }
 
     private void scanToken() {
@@ -61,6 +122,12 @@ public class Scanner {
             case '}':
                 addToken(TokenType.RIGHT_BRACE);
                 break;
+            case '[':
+                addToken(TokenType.LEFT_BRACKET);
+                break;
+            case ']':
+                addToken(TokenType.RIGHT_BRACKET);
+                break;
             case ',':
                 addToken(TokenType.COMMA);
                 break;
@@ -122,7 +189,7 @@ public class Scanner {
                 } else if (isAlpha(c)) {
                     identifier();
                 } else {
-                    Lox.error(line, "Unexpected character.");
+                    reporter.error(line, "Unexpected character.");
                 }
                 break;
         }
@@ -132,11 +199,85 @@ public class Scanner {
         while (isAlphaNumeric(peek()))
             advance();
 
-        String text = source.substring(start, current);
-        TokenType type = keywords.get(text);
-        if (type == null)
-            type = TokenType.IDENTIFIER;
-        addToken(type);
+        TokenType type = identifierType();
+        if (type == TokenType.IDENTIFIER || type == TokenType.THIS || type == TokenType.SUPER) {
+            buffer.add(type, start, current - start, line, Symbol.intern(source, start, current));
+        } else {
+            addToken(type);
+        }
+    }
+
+    private TokenType identifierType() {
+        switch (source.charAt(start)) {
+            case 'a':
+                return checkKeyword(1, TokenType.AND);
+            case 'b':
+                return checkKeyword(1, TokenType.BREAK);
+            case 'c':
+                if (current - start > 1) {
+                    switch (source.charAt(start + 1)) {
+                        case 'l':
+                            return checkKeyword(2, TokenType.CLASS);
+                        case 'o':
+                            return checkKeyword(2, TokenType.CONTINUE);
+                    }
+                }
+                break;
+            case 'e':
+                return checkKeyword(1, TokenType.ELSE);
+            case 'f':
+                if (current - start > 1) {
+                    switch (source.charAt(start + 1)) {
+                        case 'a':
+                            return checkKeyword(2, TokenType.FALSE);
+                        case 'o':
+                            return checkKeyword(2, TokenType.FOR);
+                        case 'u':
+                            return checkKeyword(2, TokenType.FUN);
+                    }
+                }
+                break;
+            case 'i':
+                return checkKeyword(1, TokenType.IF);
+            case 'n':
+                return checkKeyword(1, TokenType.NIL);
+            case 'o':
+                return checkKeyword(1, TokenType.OR);
+            case 'r':
+                return checkKeyword(1, TokenType.RETURN);
+            case 's':
+                return checkKeyword(1, TokenType.SUPER);
+            case 't':
+                if (current - start > 1) {
+                    switch (source.charAt(start + 1)) {
+                        case 'h':
+                            return checkKeyword(2, TokenType.THIS);
+                        case 'r':
+                            return checkKeyword(2, TokenType.TRUE);
+                    }
+                }
+                break;
+            case 'v':
+                return checkKeyword(1, TokenType.VAR);
+            case 'w':
+                return checkKeyword(1, TokenType.WHILE);
+        }
+
+        return TokenType.IDENTIFIER;
+    }
+
+    // Compares the rest of the identifier, from offset on, with the keyword
+    private TokenType checkKeyword(int offset, TokenType type) {
+        String keyword = lexemes[type.ordinal()];
+        if (current - start != keyword.length())
+            return TokenType.IDENTIFIER;
+
+        for (int i = offset; i < keyword.length(); i++) {
+            if (source.charAt(start + i) != keyword.charAt(i))
+                return TokenType.IDENTIFIER;
+        }
+
+        return type;
     }
 
     private void slash() {
@@ -173,7 +314,7 @@ public class Scanner {
             }
         }
 
-        addToken(TokenType.NUMBER, Double.parseDouble(source.substring(start, current)));
+        addToken(TokenType.NUMBER);
     }
 
     private void string() {
@@ -184,7 +325,7 @@ public class Scanner {
         }
 
         if (isAtEnd()) {
-            Lox.error(line, "Unterminated string");
+            reporter.error(line, "Unterminated string");
             return;
         }
 
@@ -192,7 +333,7 @@ public class Scanner {
         advance();
 
         // Remove surrounding quotes
-        String value = source.substring(start + 1, current - 1);
+        String value = source.subSequence(start + 1, current - 1).toString();
         addToken(TokenType.STRING, value);
     }
 
@@ -213,7 +354,7 @@ public class Scanner {
     }
 
     private char peekNext() {
-        if (current + 1 >= source.length())
+        if (isAtEnd(current + 1))
             return '\0';
         return source.charAt(current + 1);
     }
@@ -231,7 +372,12 @@ public class Scanner {
     }
 
     private boolean isAtEnd() {
-        return current >= source.length();
+        return isAtEnd(current);
+    }
+
+    // A mapped source only knows its length once it's decoded to the end
+    private boolean isAtEnd(int index) {
+        return mapped != null ? mapped.atEnd(index) : index >= source.length();
     }
 
     private char advance() {
@@ -239,11 +385,13 @@ public class Scanner {
     }
 
     private void addToken(TokenType type) {
-        addToken(type, null);
+        String text = lexemes[type.ordinal()];
+        if (text == null)
+            text = source.subSequence(start, current).toString();
+        addToken(type, text);
     }
 
-    private void addToken(TokenType type, Object literal) {
-        String text = source.substring(start, current);
-        tokens.add(new Token(type, text, literal, line));
+    private void addToken(TokenType type, String text) {
+        buffer.add(type, start, current - start, line, text);
     }
 }
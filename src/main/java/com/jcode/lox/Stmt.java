@@ -2,7 +2,7 @@ package com.jcode.lox;
 
 import java.util.List;
 
-abstract class Stmt {
+abstract class Stmt extends Node {
 	interface Visitor<R> {
 		R visitBreakStmt(Break stmt);
 		R visitContinueStmt(Continue stmt);
@@ -13,11 +13,31 @@ abstract class Stmt {
 		R visitReturnStmt(Return stmt);
 		R visitIfStmt(If stmt);
 		R visitWhileStmt(While stmt);
+		R visitHoistStmt(Hoist stmt);
 		R visitVarStmt(Var stmt);
 	}
 
+	static final int BREAK = 0;
+	static final int CONTINUE = 1;
+	static final int BLOCK = 2;
+	static final int EXPRESSION = 3;
+	static final int FUNCTION = 4;
+	static final int CLASS = 5;
+	static final int RETURN = 6;
+	static final int IF = 7;
+	static final int WHILE = 8;
+	static final int HOIST = 9;
+	static final int VAR = 10;
+
+	final int kind;
+
+	Stmt(int kind) {
+		this.kind = kind;
+	}
+
 	static class Break extends Stmt {
 		Break(Token keyword) {
+			super(BREAK);
 			this.keyword = keyword;
 		}
 
@@ -31,6 +51,7 @@ abstract class Stmt {
 
 	static class Continue extends Stmt {
 		Continue(Token keyword) {
+			super(CONTINUE);
 			this.keyword = keyword;
 		}
 
@@ -44,6 +65,7 @@ abstract class Stmt {
 
 	static class Block extends Stmt {
 		Block(List<Stmt> statements) {
+			super(BLOCK);
 			this.statements = statements;
 		}
 
@@ -57,6 +79,7 @@ abstract class Stmt {
 
 	static class Expression extends Stmt {
 		Expression(Expr expression) {
+			super(EXPRESSION);
 			this.expression = expression;
 		}
 
@@ -70,6 +93,7 @@ abstract class Stmt {
 
 	static class Function extends Stmt {
 		Function(Token name, List<Token> params, List<Stmt> body) {
+			super(FUNCTION);
 			this.name = name;
 			this.params = params;
 			this.body = body;
@@ -87,6 +111,7 @@ abstract class Stmt {
 
 	static class Class extends Stmt {
 		Class(Token name, Expr.Variable superclass, List<Stmt.Function> methods) {
+			super(CLASS);
 			this.name = name;
 			this.superclass = superclass;
 			this.methods = methods;
@@ -104,6 +129,7 @@ abstract class Stmt {
 
 	static class Return extends Stmt {
 		Return(Token keyword, Expr value) {
+			super(RETURN);
 			this.keyword = keyword;
 			this.value = value;
 		}
@@ -119,6 +145,7 @@ abstract class Stmt {
 
 	static class If extends Stmt {
 		If(Expr condition, Stmt thenBranch, Stmt elseBranch) {
+			super(IF);
 			this.condition = condition;
 			this.thenBranch = thenBranch;
 			this.elseBranch = elseBranch;
@@ -136,6 +163,7 @@ abstract class Stmt {
 
 	static class While extends Stmt {
 		While(Expr condition, Stmt body) {
+			super(WHILE);
 			this.condition = condition;
 			this.body = body;
 		}
@@ -149,8 +177,25 @@ abstract class Stmt {
 		final Stmt body;
 	}
 
+	static class Hoist extends Stmt {
+		Hoist(List<Token> slots, Stmt loop) {
+			super(HOIST);
+			this.slots = slots;
+			this.loop = loop;
+		}
+
+		@Override
+		<R> R accept(Visitor<R> visitor) {
+			return visitor.visitHoistStmt(this);
+		}
+
+		final List<Token> slots;
+		final Stmt loop;
+	}
+
 	static class Var extends Stmt {
 		Var(Token name, Expr initialiser) {
+			super(VAR);
 			this.name = name;
 			this.initialiser = initialiser;
 		}
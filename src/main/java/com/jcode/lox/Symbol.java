@@ -0,0 +1,141 @@
+package com.jcode.lox;
+
+import java.util.Arrays;
+
+// An interned identifier. Each name maps to exactly one Symbol, so symbols
+// compare by reference and hash with a precomputed value. Ids are dense and
+// can index arrays.
+//
+// Lookups don't lock: slots are only ever filled, and a grown table is
+// published whole, so a reader sees either the symbol or an empty slot and
+// falls back to interning it under the lock.
+final class Symbol {
+	private static volatile Symbol[] table = new Symbol[1024];
+	private static volatile Symbol[] symbols = new Symbol[512];
+	private static int count = 0;
+
+	static final Symbol THIS = intern("this");
+	static final Symbol SUPER = intern("super");
+	static final Symbol INIT = intern("init");
+
+	final String name;
+	final int id;
+	private final int hash;
+
+	private Symbol(String name, int id, int hash) {
+		this.name = name;
+		this.id = id;
+		this.hash = hash;
+	}
+
+	static Symbol intern(String name) {
+		return intern(name, 0, name.length());
+	}
+
+	// Only allocates the first time a name is seen
+	static Symbol intern(CharSequence chars, int start, int end) {
+		int hash = 0;
+		for (int i = start; i < end; i++) {
+			hash = 31 * hash + chars.charAt(i);
+		}
+
+		Symbol symbol = find(table, chars, start, end, hash);
+		if (symbol != null)
+			return symbol;
+
+		return insert(chars, start, end, hash);
+	}
+
+	private static Symbol find(Symbol[] table, CharSequence chars, int start, int end, int hash) {
+		int mask = table.length - 1;
+		int index = (hash ^ (hash >>> 16)) & mask;
+		while (table[index] != null) {
+			Symbol symbol = table[index];
+			if (symbol.hash == hash && symbol.matches(chars, start, end))
+				return symbol;
+
+			index = (index + 1) & mask;
+		}
+
+		return null;
+	}
+
+	private static synchronized Symbol insert(CharSequence chars, int start, int end, int hash) {
+		// Another thread may have interned it since the unlocked lookup
+		Symbol[] table = Symbol.table;
+		Symbol existing = find(table, chars, start, end, hash);
+		if (existing != null)
+			return existing;
+
+		int mask = table.length - 1;
+		int index = (hash ^ (hash >>> 16)) & mask;
+		while (table[index] != null) {
+			index = (index + 1) & mask;
+		}
+
+		Symbol symbol = new Symbol(chars.subSequence(start, end).toString(), count, hash);
+		table[index] = symbol;
+
+		Symbol[] byId = symbols;
+		if (count == byId.length) {
+			byId = Arrays.copyOf(byId, count * 2);
+		}
+		byId[count++] = symbol;
+		symbols = byId;
+
+		if (count * 2 > table.length) {
+			rehash();
+		}
+
+		return symbol;
+	}
+
+	static Symbol of(int id) {
+		return symbols[id];
+	}
+
+	static synchronized int count() {
+		return count;
+	}
+
+	private static void rehash() {
+		Symbol[] old = table;
+		Symbol[] grown = new Symbol[old.length * 2];
+		int mask = grown.length - 1;
+
+		for (Symbol symbol : old) {
+			if (symbol == null)
+				continue;
+
+			int index = (symbol.hash ^ (symbol.hash >>> 16)) & mask;
+			while (grown[index] != null) {
+				index = (index + 1) & mask;
+			}
+			grown[index] = symbol;
+		}
+
+		table = grown;
+	}
+
+	private boolean matches(CharSequence chars, int start, int end) {
+		if (name.length() != end - start)
+			return false;
+
+		for (int i = 0; i < name.length(); i++) {
+			if (name.charAt(i) != chars.charAt(start + i))
+				return false;
+		}
+
+		return true;
+	}
+
+	@Override
+	public int hashCode() {
+		return hash;
+	}
+
+	@Override
+	public String toString() {
+		return name;
+	}
+}
@@ -0,0 +1,195 @@
+package com.jcode.lox;
+
+import java.io.PrintStream;
+import java.util.List;
+import java.util.Set;
+
+import com.jcode.lox.Expr.Assign;
+import com.jcode.lox.Expr.Binary;
+import com.jcode.lox.Expr.Call;
+import com.jcode.lox.Expr.Logical;
+import com.jcode.lox.Expr.Variable;
+import com.jcode.lox.Stmt.Function;
+
+// The optimised tier of a program whose functions and loops start out
+// running the tree as resolved. The passes run over the whole program the
+// first time something gets hot, so a script that finishes before then never
+// pays for them. A function switches to its optimised declaration once it's
+// been called Policy.calls times, counted per declaration so closures made
+// from the same one share a count. A loop switches after Policy.loops
+// iterations of one run, in the middle of that run: its state is all in its
+// environment, so the optimised loop carries on from the next condition check.
+final class Tiers {
+	// Thresholds for switching, and where to log when it happens
+	static final class Policy {
+		static final int CALLS = 1000;
+		static final int LOOPS = 10000;
+
+		final int calls;
+		final int loops;
+		final PrintStream log;
+
+		Policy(int calls, int loops, PrintStream log) {
+			this.calls = calls;
+			this.loops = loops;
+			this.log = log;
+		}
+	}
+
+	final Policy policy;
+	private final List<Stmt> statements;
+	private final IntNodeTable locals;
+	private final Set<Optimisation> optimisations;
+	private final NodeCounters calls;
+
+	// Each statement the passes replaced and what with, set once they've run.
+	// Their scope depths are kept apart, as other threads may be reading the
+	// program's while they run.
+	private volatile NodeTable<Stmt> replaced = null;
+	private IntNodeTable optimisedLocals;
+
+	Tiers(List<Stmt> statements, IntNodeTable locals, Set<Optimisation> optimisations, Policy policy) {
+		this.statements = statements;
+		this.locals = locals;
+		this.optimisations = optimisations;
+		this.policy = policy;
+
+		Declarations declarations = new Declarations(locals);
+		declarations.stmts(statements);
+		this.calls = new NodeCounters(declarations.first, declarations.last);
+	}
+
+	// The declaration to run for a call to a function from the resolved tree,
+	// which is its optimised one once it's hot
+	Function declaration(Function function) {
+		int calls = this.calls.increment(function);
+		if (calls < policy.calls)
+			return function;
+
+		Function optimised = (Function) optimised(function);
+		if (optimised == null)
+			return function;
+
+		if (calls == policy.calls && policy.log != null) {
+			policy.log.println("[tier] fun " + function.name.lexeme + " (line " + function.name.line
+					+ ") optimised after " + calls + " calls");
+		}
+
+		return optimised;
+	}
+
+	// What a function declaration or loop from the resolved tree became, or
+	// null if the passes left it as it was or removed it
+	Stmt optimised(Stmt stmt) {
+		NodeTable<Stmt> replaced = compile();
+
+		Stmt optimised = stmt;
+		for (Stmt next = replaced.get(stmt); next != null; next = replaced.get(next)) {
+			optimised = next;
+		}
+
+		return optimised == stmt ? null : optimised;
+	}
+
+	// The scope depths for optimised statements, which reading replaced
+	// makes visible to any thread that got one from optimised()
+	IntNodeTable locals() {
+		compile();
+		return optimisedLocals;
+	}
+
+	private NodeTable<Stmt> compile() {
+		NodeTable<Stmt> replaced = this.replaced;
+		if (replaced != null)
+			return replaced;
+
+		synchronized (this) {
+			if (this.replaced == null) {
+				IntNodeTable locals = this.locals.copy();
+				replaced = new NodeTable<>();
+
+				// Any errors were reported when the program was tiered
+				LoxProgram.optimise(statements, locals, new ErrorReporter(System.err), optimisations, null, replaced);
+
+				optimisedLocals = locals;
+				this.replaced = replaced;
+			}
+
+			return this.replaced;
+		}
+	}
+
+	void replaced(Stmt.While loop, int iterations) {
+		if (policy.log != null) {
+			policy.log.println("[tier] loop (line " + new LineFinder().find(loop) + ") optimised after "
+					+ iterations + " iterations");
+		}
+	}
+
+	// The range of ids the program's function declarations have
+	private static class Declarations extends AstRewriter {
+		int first = Integer.MAX_VALUE;
+		int last = Integer.MIN_VALUE;
+
+		Declarations(IntNodeTable locals) {
+			super(locals);
+		}
+
+		@Override
+		public Stmt visitFunctionStmt(Function stmt) {
+			first = Math.min(first, stmt.id);
+			last = Math.max(last, stmt.id);
+			return super.visitFunctionStmt(stmt);
+		}
+	}
+
+	// The line of the first token a loop's condition or body has, for the log
+	private static class LineFinder extends AstRewriter {
+		private int line = 0;
+
+		LineFinder() {
+			super(new IntNodeTable());
+		}
+
+		int find(Stmt stmt) {
+			stmt(stmt);
+			return line;
+		}
+
+		private void found(Token token) {
+			if (line == 0) {
+				line = token.line;
+			}
+		}
+
+		@Override
+		public Expr visitAssignExpr(Assign expr) {
+			found(expr.name);
+			return super.visitAssignExpr(expr);
+		}
+
+		@Override
+		public Expr visitBinaryExpr(Binary expr) {
+			found(expr.operator);
+			return super.visitBinaryExpr(expr);
+		}
+
+		@Override
+		public Expr visitCallExpr(Call expr) {
+			found(expr.paren);
+			return super.visitCallExpr(expr);
+		}
+
+		@Override
+		public Expr visitLogicalExpr(Logical expr) {
+			found(expr.operator);
+			return super.visitLogicalExpr(expr);
+		}
+
+		@Override
+		public Expr visitVariableExpr(Variable expr) {
+			found(expr.name);
+			return super.visitVariableExpr(expr);
+		}
+	}
+}
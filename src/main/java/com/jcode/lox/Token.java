@@ -6,11 +6,27 @@ public class Token {
     final Object literal;
     final int line;
 
+    // Set for tokens that name something: identifiers, 'this' and 'super'
+    final Symbol symbol;
+
     Token(TokenType type, String lexeme, Object literal, int line) {
         this.type = type;
         this.lexeme = lexeme;
         this.literal = literal;
         this.line = line;
+        this.symbol = isName(type) ? Symbol.intern(lexeme) : null;
+    }
+
+    Token(TokenType type, Symbol symbol, int line) {
+        this.type = type;
+        this.lexeme = symbol.name;
+        this.literal = null;
+        this.line = line;
+        this.symbol = symbol;
+    }
+
+    private static boolean isName(TokenType type) {
+        return type == TokenType.IDENTIFIER || type == TokenType.THIS || type == TokenType.SUPER;
     }
 
     public String toString() {
@@ -0,0 +1,142 @@
+package com.jcode.lox;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+// Tokens stored as parallel arrays rather than one object each. Names are
+// stored as symbol ids, other lexemes once in a shared table, and string
+// literals in a side table.
+// Token objects are only created for the tokens the parser keeps.
+class TokenBuffer {
+	private static final TokenType[] TYPES = TokenType.values();
+	private static final int INITIAL_CAPACITY = 256;
+
+	private int[] types = new int[INITIAL_CAPACITY];
+	private int[] starts = new int[INITIAL_CAPACITY];
+	private int[] lengths = new int[INITIAL_CAPACITY];
+	private int[] lines = new int[INITIAL_CAPACITY];
+	private int[] values = new int[INITIAL_CAPACITY];
+	private int size = 0;
+
+	private String[] names = new String[INITIAL_CAPACITY];
+	private final Map<String, Integer> nameIndex = new HashMap<>();
+	private int nameCount = 0;
+
+	private String[] literals = new String[16];
+	private int literalCount = 0;
+
+	void add(TokenType type, int start, int length, int line, String text) {
+		add(type, start, length, line, type == TokenType.STRING ? addLiteral(text) : addName(text));
+	}
+
+	// Names are stored by symbol id rather than in the name table
+	void add(TokenType type, int start, int length, int line, Symbol symbol) {
+		add(type, start, length, line, symbol.id);
+	}
+
+	private void add(TokenType type, int start, int length, int line, int value) {
+		if (size == types.length) {
+			int capacity = size * 2;
+			types = Arrays.copyOf(types, capacity);
+			starts = Arrays.copyOf(starts, capacity);
+			lengths = Arrays.copyOf(lengths, capacity);
+			lines = Arrays.copyOf(lines, capacity);
+			values = Arrays.copyOf(values, capacity);
+		}
+
+		types[size] = type.ordinal();
+		starts[size] = start;
+		lengths[size] = length;
+		lines[size] = line;
+		values[size] = value;
+		size++;
+	}
+
+	private int addName(String text) {
+		Integer index = nameIndex.get(text);
+		if (index != null)
+			return index;
+
+		if (nameCount == names.length) {
+			names = Arrays.copyOf(names, nameCount * 2);
+		}
+
+		names[nameCount] = text;
+		nameIndex.put(text, nameCount);
+		return nameCount++;
+	}
+
+	private int addLiteral(String value) {
+		if (literalCount == literals.length) {
+			literals = Arrays.copyOf(literals, literalCount * 2);
+		}
+
+		literals[literalCount] = value;
+		return literalCount++;
+	}
+
+	int size() {
+		return size;
+	}
+
+	TokenType type(int index) {
+		return TYPES[types[index]];
+	}
+
+	int start(int index) {
+		return starts[index];
+	}
+
+	int length(int index) {
+		return lengths[index];
+	}
+
+	int line(int index) {
+		return lines[index];
+	}
+
+	Token token(int index) {
+		TokenType type = type(index);
+
+		switch (type) {
+			case STRING:
+				String value = literals[values[index]];
+				return new Token(type, "\"" + value + "\"", value, lines[index]);
+			case IDENTIFIER:
+			case THIS:
+			case SUPER:
+				return new Token(type, Symbol.of(values[index]), lines[index]);
+			case NUMBER:
+				String lexeme = names[values[index]];
+				return new Token(type, lexeme, Double.parseDouble(lexeme), lines[index]);
+			default:
+				return new Token(type, names[values[index]], null, lines[index]);
+		}
+	}
+
+	// Drops every token but the last, so a buffer can be refilled as a window
+	// while the parser still sees the previous token
+	void retainLast() {
+		if (size == 0)
+			return;
+
+		int last = size - 1;
+		types[0] = types[last];
+		starts[0] = starts[last];
+		lengths[0] = lengths[last];
+		lines[0] = lines[last];
+		values[0] = values[last];
+
+		if (types[0] == TokenType.STRING.ordinal()) {
+			literals[0] = literals[values[0]];
+			values[0] = 0;
+			literalCount = 1;
+		} else {
+			literalCount = 0;
+		}
+
+		Arrays.fill(literals, literalCount, literals.length, null);
+		size = 1;
+	}
+}
@@ -1,7 +1,7 @@
 package com.jcode.lox;
 
 enum TokenType {
-	LEFT_PAREN, RIGHT_PAREN, LEFT_BRACE, RIGHT_BRACE,
+	LEFT_PAREN, RIGHT_PAREN, LEFT_BRACE, RIGHT_BRACE, LEFT_BRACKET, RIGHT_BRACKET,
 
 	COMMA, DOT,
 
@@ -0,0 +1,724 @@
+package com.jcode.lox;
+
+import java.io.PrintStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.jcode.lox.Expr.Array;
+import com.jcode.lox.Expr.Assign;
+import com.jcode.lox.Expr.Binary;
+import com.jcode.lox.Expr.Bound;
+import com.jcode.lox.Expr.Call;
+import com.jcode.lox.Expr.Dictionary;
+import com.jcode.lox.Expr.Get;
+import com.jcode.lox.Expr.GetThis;
+import com.jcode.lox.Expr.Grouping;
+import com.jcode.lox.Expr.Hoisted;
+import com.jcode.lox.Expr.Increment;
+import com.jcode.lox.Expr.Index;
+import com.jcode.lox.Expr.IndexSet;
+import com.jcode.lox.Expr.Inline;
+import com.jcode.lox.Expr.Invoke;
+import com.jcode.lox.Expr.Literal;
+import com.jcode.lox.Expr.LocalCompare;
+import com.jcode.lox.Expr.Logical;
+import com.jcode.lox.Expr.Negate;
+import com.jcode.lox.Expr.NumericBinary;
+import com.jcode.lox.Expr.Set;
+import com.jcode.lox.Expr.Super;
+import com.jcode.lox.Expr.Ternary;
+import com.jcode.lox.Expr.This;
+import com.jcode.lox.Expr.Unary;
+import com.jcode.lox.Expr.Variable;
+import com.jcode.lox.Stmt.Block;
+import com.jcode.lox.Stmt.Break;
+import com.jcode.lox.Stmt.Class;
+import com.jcode.lox.Stmt.Continue;
+import com.jcode.lox.Stmt.Expression;
+import com.jcode.lox.Stmt.Function;
+import com.jcode.lox.Stmt.Hoist;
+import com.jcode.lox.Stmt.If;
+import com.jcode.lox.Stmt.Return;
+import com.jcode.lox.Stmt.Var;
+import com.jcode.lox.Stmt.While;
+
+// Works out which expressions always give a number or a string, following
+// the types of local variables through each function, then replaces
+// arithmetic and comparisons on numbers with the unchecked NumericBinary
+// and Negate.
+//
+// Globals, parameters and variables a function assigns from outside its own
+// scopes are always unknown. A local becomes a number after an operation
+// that only succeeds if it is one, such as being subtracted or compared
+// with a number.
+class TypeInference implements Expr.Visitor<TypeInference.Type>, Stmt.Visitor<Void> {
+	enum Type {
+		NUMBER, STRING, UNKNOWN;
+
+		Type merge(Type other) {
+			return this == other ? this : UNKNOWN;
+		}
+
+		@Override
+		public String toString() {
+			return name().toLowerCase();
+		}
+	}
+
+	// The types of the locals in each scope, from the outermost. Scopes a
+	// function can see but doesn't own are null, as their variables can
+	// change between calls.
+	private static class State {
+		final List<Map<Symbol, Type>> scopes;
+
+		State() {
+			this.scopes = new ArrayList<>();
+		}
+
+		State(State state) {
+			this.scopes = new ArrayList<>(state.scopes.size());
+			for (Map<Symbol, Type> scope : state.scopes) {
+				scopes.add(scope == null ? null : new HashMap<>(scope));
+			}
+		}
+
+		State merge(State other) {
+			State merged = new State(this);
+			for (int i = 0; i < merged.scopes.size(); i++) {
+				Map<Symbol, Type> scope = merged.scopes.get(i);
+				if (scope == null)
+					continue;
+
+				Map<Symbol, Type> theirs = other.scopes.get(i);
+				for (Map.Entry<Symbol, Type> entry : scope.entrySet()) {
+					Type type = theirs == null ? null : theirs.get(entry.getKey());
+					entry.setValue(type == null ? Type.UNKNOWN : entry.getValue().merge(type));
+				}
+			}
+
+			return merged;
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			return other instanceof State && scopes.equals(((State) other).scopes);
+		}
+
+		@Override
+		public int hashCode() {
+			return scopes.hashCode();
+		}
+	}
+
+	// A line of --dump-types output. Like the types, it's merged over every
+	// time its node is analysed.
+	private static class Description {
+		final Token token;
+		final String label;
+		final boolean arithmetic;
+		final Type[] types;
+
+		Description(Token token, String label, boolean arithmetic, Type[] types) {
+			this.token = token;
+			this.label = label;
+			this.arithmetic = arithmetic;
+			this.types = types;
+		}
+
+		@Override
+		public String toString() {
+			StringBuilder text = new StringBuilder("[line " + token.line + "] " + label);
+			boolean numbers = true;
+			for (int i = 0; i < types.length; i++) {
+				text.append(i == 0 ? " " : ", ").append(types[i]);
+				numbers &= types[i] == Type.NUMBER;
+			}
+
+			if (arithmetic && numbers) {
+				text.append(" unchecked");
+			}
+
+			return text.toString();
+		}
+	}
+
+	// Where a loop's breaks and continues leave the state
+	private static class Loop {
+		final List<State> breaks = new ArrayList<>();
+		final List<State> continues = new ArrayList<>();
+	}
+
+	private final IntNodeTable locals;
+	private final PrintStream dump;
+
+	// Merged over every time a node is analysed, which for a loop body is
+	// once per pass until its state settles
+	private final NodeTable<Type> types = new NodeTable<>();
+	private final Map<Object, Description> dumped = new LinkedHashMap<>();
+
+	private java.util.Set<Symbol> captured;
+	private State state = new State();
+	private final Deque<Loop> loops = new ArrayDeque<>();
+
+	// Passed on to the rewrite that specialises arithmetic
+	private NodeTable<Stmt> replaced = null;
+
+	TypeInference(IntNodeTable locals, PrintStream dump) {
+		this.locals = locals;
+		this.dump = dump;
+	}
+
+	TypeInference tracking(NodeTable<Stmt> replaced) {
+		this.replaced = replaced;
+		return this;
+	}
+
+	List<Stmt> rewrite(List<Stmt> statements) {
+		captured = Captures.find(locals, statements);
+		analyse(statements);
+
+		if (dump != null) {
+			for (Description description : dumped.values()) {
+				dump.println(description);
+			}
+		}
+
+		return new Specialiser(locals).tracking(replaced).rewrite(statements);
+	}
+
+	private void analyse(List<Stmt> statements) {
+		for (Stmt stmt : statements) {
+			stmt.accept(this);
+		}
+	}
+
+	private Type analyse(Expr expr) {
+		Type type = expr.accept(this);
+		Type merged = types.get(expr);
+		types.put(expr, merged == null ? type : merged.merge(type));
+		return type;
+	}
+
+	private Type typeOf(Expr expr) {
+		Type type = types.get(expr);
+		return type == null ? Type.UNKNOWN : type;
+	}
+
+	private void beginScope() {
+		state.scopes.add(new HashMap<>());
+	}
+
+	private void endScope() {
+		state.scopes.remove(state.scopes.size() - 1);
+	}
+
+	private void declare(Token name, Type type) {
+		if (state.scopes.isEmpty())
+			return;
+
+		Map<Symbol, Type> scope = state.scopes.get(state.scopes.size() - 1);
+		if (scope != null) {
+			scope.put(name.symbol, captured.contains(name.symbol) ? Type.UNKNOWN : type);
+		}
+	}
+
+	// The scope a resolved local lives in, or null for a global or a
+	// variable the current function doesn't own
+	private Map<Symbol, Type> scope(Expr expr) {
+		int distance = locals.get(expr);
+		if (distance == IntNodeTable.MISSING)
+			return null;
+
+		int index = state.scopes.size() - 1 - distance;
+		return index < 0 ? null : state.scopes.get(index);
+	}
+
+	private void set(Expr expr, Token name, Type type) {
+		Map<Symbol, Type> scope = scope(expr);
+		if (scope != null) {
+			scope.put(name.symbol, captured.contains(name.symbol) ? Type.UNKNOWN : type);
+		}
+	}
+
+	// Records that a variable must hold a value of the given type for
+	// evaluation to have got this far
+	private void refine(Expr expr, Type type) {
+		while (expr instanceof Grouping) {
+			expr = ((Grouping) expr).expression;
+		}
+
+		if (type != Type.UNKNOWN && expr instanceof Variable) {
+			set(expr, ((Variable) expr).name, type);
+		}
+	}
+
+	private void describe(Object node, Token token, String label, boolean arithmetic, Type... types) {
+		if (dump == null)
+			return;
+
+		Description previous = dumped.get(node);
+		if (previous != null) {
+			for (int i = 0; i < types.length; i++) {
+				types[i] = previous.types[i].merge(types[i]);
+			}
+		}
+
+		dumped.put(node, new Description(token, label, arithmetic, types));
+	}
+
+	// Runs a function body against the state it can rely on: nothing about
+	// the scopes around it, and the given types for its parameters
+	private void function(List<Token> params, List<Type> arguments, int enclosing, Runnable body) {
+		State outer = state;
+		Deque<Loop> outerLoops = new ArrayDeque<>(loops);
+		loops.clear();
+
+		state = new State();
+		for (int i = 0; i < enclosing; i++) {
+			state.scopes.add(null);
+		}
+
+		beginScope();
+		for (int i = 0; i < params.size(); i++) {
+			declare(params.get(i), arguments == null ? Type.UNKNOWN : arguments.get(i));
+		}
+
+		try {
+			body.run();
+		} finally {
+			state = outer;
+			loops.addAll(outerLoops);
+		}
+	}
+
+	@Override
+	public Type visitTernaryExpr(Ternary expr) {
+		analyse(expr.left);
+
+		State before = new State(state);
+		Type middle = analyse(expr.middle);
+		State afterMiddle = state;
+
+		state = before;
+		Type right = analyse(expr.right);
+		state = afterMiddle.merge(state);
+
+		return middle.merge(right);
+	}
+
+	@Override
+	public Type visitAssignExpr(Assign expr) {
+		Type type = analyse(expr.value);
+		set(expr, expr.name, type);
+
+		Map<Symbol, Type> scope = scope(expr);
+		if (scope != null) {
+			describe(expr, expr.name, expr.name.lexeme + " =", false, scope.get(expr.name.symbol));
+		}
+
+		return type;
+	}
+
+	// Only succeeds on a number
+	@Override
+	public Type visitIncrementExpr(Increment expr) {
+		set(expr, expr.name, Type.NUMBER);
+		return Type.NUMBER;
+	}
+
+	@Override
+	public Type visitBinaryExpr(Binary expr) {
+		Type left = analyse(expr.left);
+		Type right = analyse(expr.right);
+		Type type = Type.UNKNOWN;
+
+		switch (expr.operator.type) {
+			case MINUS:
+			case MINUS_EQUAL:
+			case SLASH:
+			case SLASH_EQUAL:
+			case STAR:
+			case STAR_EQUAL:
+				refine(expr.left, Type.NUMBER);
+				refine(expr.right, Type.NUMBER);
+				type = Type.NUMBER;
+				break;
+			case PLUS:
+			case PLUS_EQUAL:
+				// Both sides must be numbers or both strings
+				type = left != Type.UNKNOWN ? left : right;
+				refine(expr.left, type);
+				refine(expr.right, type);
+				break;
+			case GREATER:
+			case GREATER_EQUAL:
+			case LESS:
+			case LESS_EQUAL:
+				refine(expr.left, right);
+				refine(expr.right, left);
+				break;
+			default:
+				break;
+		}
+
+		if (type == Type.NUMBER || isComparison(expr.operator)) {
+			describe(expr, expr.operator, "'" + expr.operator.lexeme + "'", true, left, right);
+		}
+
+		return type;
+	}
+
+	private static boolean isComparison(Token operator) {
+		switch (operator.type) {
+			case GREATER:
+			case GREATER_EQUAL:
+			case LESS:
+			case LESS_EQUAL:
+				return true;
+			default:
+				return false;
+		}
+	}
+
+	@Override
+	public Type visitNumericBinaryExpr(NumericBinary expr) {
+		analyse(expr.left);
+		analyse(expr.right);
+		return isComparison(expr.operator) ? Type.UNKNOWN : Type.NUMBER;
+	}
+
+	@Override
+	public Type visitLocalCompareExpr(LocalCompare expr) {
+		analyse(expr.left);
+		analyse(expr.right);
+		return Type.UNKNOWN;
+	}
+
+	@Override
+	public Type visitCallExpr(Call expr) {
+		analyse(expr.callee);
+		for (Expr argument : expr.arguments) {
+			analyse(argument);
+		}
+
+		return Type.UNKNOWN;
+	}
+
+	@Override
+	public Type visitInvokeExpr(Invoke expr) {
+		analyse(expr.object);
+		for (Expr argument : expr.arguments) {
+			analyse(argument);
+		}
+
+		return Type.UNKNOWN;
+	}
+
+	@Override
+	public Type visitBoundExpr(Bound expr) {
+		for (Expr argument : expr.arguments) {
+			analyse(argument);
+		}
+
+		return Type.UNKNOWN;
+	}
+
+	// The body can only see its parameters, which take the arguments' types
+	@Override
+	public Type visitInlineExpr(Inline expr) {
+		List<Type> arguments = new ArrayList<>();
+		for (Expr argument : expr.arguments) {
+			arguments.add(analyse(argument));
+		}
+
+		// The function can be redefined, when the call's result could be anything
+		function(expr.params, arguments, 0, () -> analyse(expr.body));
+		return Type.UNKNOWN;
+	}
+
+	@Override
+	public Type visitHoistedExpr(Hoisted expr) {
+		return analyse(expr.expression);
+	}
+
+	@Override
+	public Type visitGetExpr(Get expr) {
+		analyse(expr.object);
+		return Type.UNKNOWN;
+	}
+
+	@Override
+	public Type visitGetThisExpr(GetThis expr) {
+		return Type.UNKNOWN;
+	}
+
+	@Override
+	public Type visitSetExpr(Set expr) {
+		analyse(expr.object);
+		analyse(expr.value);
+		return Type.UNKNOWN;
+	}
+
+	@Override
+	public Type visitIndexExpr(Index expr) {
+		analyse(expr.object);
+		analyse(expr.index);
+		return Type.UNKNOWN;
+	}
+
+	@Override
+	public Type visitIndexSetExpr(IndexSet expr) {
+		analyse(expr.object);
+		analyse(expr.index);
+		analyse(expr.value);
+		return Type.UNKNOWN;
+	}
+
+	@Override
+	public Type visitThisExpr(This expr) {
+		return Type.UNKNOWN;
+	}
+
+	@Override
+	public Type visitSuperExpr(Super expr) {
+		return Type.UNKNOWN;
+	}
+
+	@Override
+	public Type visitGroupingExpr(Grouping expr) {
+		return analyse(expr.expression);
+	}
+
+	@Override
+	public Type visitLiteralExpr(Literal expr) {
+		if (expr.value instanceof Double)
+			return Type.NUMBER;
+
+		if (expr.value instanceof String)
+			return Type.STRING;
+
+		return Type.UNKNOWN;
+	}
+
+	@Override
+	public Type visitArrayExpr(Array expr) {
+		for (Expr element : expr.elements) {
+			analyse(element);
+		}
+
+		return Type.UNKNOWN;
+	}
+
+	@Override
+	public Type visitDictionaryExpr(Dictionary expr) {
+		for (int i = 0; i < expr.keys.size(); i++) {
+			analyse(expr.keys.get(i));
+			analyse(expr.values.get(i));
+		}
+
+		return Type.UNKNOWN;
+	}
+
+	@Override
+	public Type visitLogicalExpr(Logical expr) {
+		Type left = analyse(expr.left);
+
+		State before = new State(state);
+		Type right = analyse(expr.right);
+		state = before.merge(state);
+
+		return left.merge(right);
+	}
+
+	@Override
+	public Type visitVariableExpr(Variable expr) {
+		Map<Symbol, Type> scope = scope(expr);
+		if (scope == null)
+			return Type.UNKNOWN;
+
+		return scope.getOrDefault(expr.name.symbol, Type.UNKNOWN);
+	}
+
+	@Override
+	public Type visitUnaryExpr(Unary expr) {
+		Type right = analyse(expr.right);
+		if (expr.operator.type != TokenType.MINUS)
+			return Type.UNKNOWN;
+
+		refine(expr.right, Type.NUMBER);
+		describe(expr, expr.operator, "'-'", true, right);
+		return Type.NUMBER;
+	}
+
+	@Override
+	public Type visitNegateExpr(Negate expr) {
+		analyse(expr.right);
+		return Type.NUMBER;
+	}
+
+	@Override
+	public Void visitBreakStmt(Break stmt) {
+		loops.peek().breaks.add(new State(state));
+		return null;
+	}
+
+	@Override
+	public Void visitContinueStmt(Continue stmt) {
+		loops.peek().continues.add(new State(state));
+		return null;
+	}
+
+	@Override
+	public Void visitBlockStmt(Block stmt) {
+		beginScope();
+		analyse(stmt.statements);
+		endScope();
+		return null;
+	}
+
+	@Override
+	public Void visitExpressionStmt(Expression stmt) {
+		analyse(stmt.expression);
+		return null;
+	}
+
+	@Override
+	public Void visitFunctionStmt(Function stmt) {
+		declare(stmt.name, Type.UNKNOWN);
+		function(stmt.params, null, state.scopes.size(), () -> analyse(stmt.body));
+		return null;
+	}
+
+	@Override
+	public Void visitClassStmt(Class stmt) {
+		declare(stmt.name, Type.UNKNOWN);
+
+		// The methods' closures have a scope for 'this', and one for 'super'
+		// if there's a superclass
+		int enclosing = state.scopes.size() + (stmt.superclass == null ? 1 : 2);
+		for (Function method : stmt.methods) {
+			function(method.params, null, enclosing, () -> analyse(method.body));
+		}
+
+		return null;
+	}
+
+	@Override
+	public Void visitReturnStmt(Return stmt) {
+		if (stmt.value != null) {
+			analyse(stmt.value);
+		}
+
+		return null;
+	}
+
+	@Override
+	public Void visitIfStmt(If stmt) {
+		analyse(stmt.condition);
+
+		State before = new State(state);
+		stmt.thenBranch.accept(this);
+		State afterThen = state;
+
+		state = before;
+		if (stmt.elseBranch != null) {
+			stmt.elseBranch.accept(this);
+		}
+
+		state = afterThen.merge(state);
+		return null;
+	}
+
+	// Goes round the loop until the state at its head stops changing. Each
+	// variable can only go from a type to unknown, so this soon settles.
+	@Override
+	public Void visitWhileStmt(While stmt) {
+		State head = new State(state);
+		while (true) {
+			Loop loop = new Loop();
+			loops.push(loop);
+
+			state = new State(head);
+			if (stmt.condition != null) {
+				analyse(stmt.condition);
+			}
+
+			State exit = new State(state);
+			stmt.body.accept(this);
+			loops.pop();
+
+			State next = head.merge(state);
+			for (State jump : loop.continues) {
+				next = next.merge(jump);
+			}
+
+			if (next.equals(head)) {
+				// Without a condition the loop can only be left by a break
+				state = stmt.condition != null || loop.breaks.isEmpty() ? exit : loop.breaks.get(0);
+				for (State jump : loop.breaks) {
+					state = state.merge(jump);
+				}
+
+				return null;
+			}
+
+			head = next;
+		}
+	}
+
+	@Override
+	public Void visitHoistStmt(Hoist stmt) {
+		stmt.loop.accept(this);
+		return null;
+	}
+
+	@Override
+	public Void visitVarStmt(Var stmt) {
+		Type type = stmt.initialiser == null ? Type.UNKNOWN : analyse(stmt.initialiser);
+		declare(stmt.name, type);
+
+		if (!state.scopes.isEmpty()) {
+			Map<Symbol, Type> scope = state.scopes.get(state.scopes.size() - 1);
+			describe(stmt, stmt.name, "var " + stmt.name.lexeme + ":", false, scope.get(stmt.name.symbol));
+		}
+
+		return null;
+	}
+
+	// Swaps in the unchecked nodes where both operands are known numbers
+	private class Specialiser extends AstRewriter {
+		Specialiser(IntNodeTable locals) {
+			super(locals);
+		}
+
+		@Override
+		public Expr visitBinaryExpr(Binary expr) {
+			Expr rewritten = super.visitBinaryExpr(expr);
+			if (typeOf(expr.left) != Type.NUMBER || typeOf(expr.right) != Type.NUMBER)
+				return rewritten;
+
+			switch (expr.operator.type) {
+				case EQUAL_EQUAL:
+				case BANG_EQUAL:
+					return rewritten;
+				default:
+					Binary binary = (Binary) rewritten;
+					return new NumericBinary(binary.left, binary.operator, binary.right);
+			}
+		}
+
+		@Override
+		public Expr visitUnaryExpr(Unary expr) {
+			Expr rewritten = super.visitUnaryExpr(expr);
+			if (expr.operator.type != TokenType.MINUS || typeOf(expr.right) != Type.NUMBER)
+				return rewritten;
+
+			return new Negate(expr.operator, ((Unary) rewritten).right);
+		}
+	}
+}
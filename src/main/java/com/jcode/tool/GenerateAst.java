@@ -16,17 +16,30 @@ public class GenerateAst {
 		defineAst(outputDir, "Expr", Arrays.asList(
 				"Ternary  : Expr left, Token op1, Expr middle, Token op2, Expr right",
 				"Assign   : Token name, Expr value",
+				"Increment : Token name, Token operator, double delta",
 				"Binary   : Expr left, Token operator, Expr right",
+				"NumericBinary : Expr left, Token operator, Expr right",
+				"LocalCompare : Variable left, Token operator, Variable right",
 				"Call     : Expr callee, Token paren, List<Expr> arguments",
+				"Invoke   : Expr object, Token name, Token paren, List<Expr> arguments",
+				"Bound    : Variable callee, Token paren, List<Expr> arguments, GlobalBinding binding",
+				"Inline   : Token name, Token paren, List<Token> params, List<Expr> arguments, Expr body, GlobalBinding binding",
+				"Hoisted  : Token slot, Expr expression",
 				"Get      : Expr object, Token name",
+				"GetThis  : This object, Token name",
 				"Set      : Expr object, Token name, Expr value",
+				"Index    : Expr object, Token bracket, Expr index",
+				"IndexSet : Expr object, Token bracket, Expr index, Token operator, Expr value",
 				"This     : Token keyword",
 				"Super    : Token keyword, Token method",
 				"Grouping : Expr expression",
 				"Literal  : Object value",
+				"Array    : Token bracket, List<Expr> elements",
+				"Dictionary : Token brace, List<Expr> keys, List<Expr> values",
 				"Logical  : Expr left, Token operator, Expr right",
 				"Variable : Token name",
-				"Unary    : Token operator, Expr right"));
+				"Unary    : Token operator, Expr right",
+				"Negate   : Token operator, Expr right"));
 
 		defineAst(outputDir, "Stmt", Arrays.asList(
 				"Break      : Token keyword",
@@ -38,7 +51,10 @@ public class GenerateAst {
 				"Return     : Token keyword, Expr value",
 				"If         : Expr condition, Stmt thenBranch, Stmt elseBranch",
 				"While      : Expr condition, Stmt body",
+				"Hoist      : List<Token> slots, Stmt loop",
 				"Var        : Token name, Expr initialiser"));
+
+		defineSupport(outputDir);
 	}
 
 	private static void defineAst(
@@ -50,9 +66,10 @@ public class GenerateAst {
 		writer.println();
 		writer.println("import java.util.List;");
 		writer.println();
-		writer.println("abstract class " + baseName + " {");
+		writer.println("abstract class " + baseName + " extends Node {");
 
 		defineVisitor(writer, baseName, types);
+		defineKinds(writer, baseName, types);
 
 		// The AST classes
 		for (String type : types) {
@@ -70,6 +87,185 @@ public class GenerateAst {
 		writer.close();
 	}
 
+	// The classes that don't depend on the node types: Node, which gives each
+	// node its id, and the tables analyses keep per-node data in
+	private static void defineSupport(String outputDir) throws IOException {
+		defineFile(outputDir, "Node",
+				"package com.jcode.lox;",
+				"",
+				"import java.util.concurrent.atomic.AtomicInteger;",
+				"",
+				"// Base of Expr and Stmt. Each node takes the next id when it's made, so the",
+				"// nodes of one program have ids close together and data about them can be",
+				"// kept in arrays indexed by id instead of maps keyed by node.",
+				"abstract class Node {",
+				"\tprivate static final AtomicInteger ids = new AtomicInteger();",
+				"",
+				"\tfinal int id = ids.getAndIncrement();",
+				"}");
+
+		defineFile(outputDir, "NodeTable",
+				"package com.jcode.lox;",
+				"",
+				"import java.util.Arrays;",
+				"",
+				"// A value for each node, in an array covering the ids from the lowest to the",
+				"// highest node put in it. A table is filled on one thread, and can be read",
+				"// from any number once it's been published.",
+				"final class NodeTable<T> {",
+				"\tprivate int base = 0;",
+				"\tprivate Object[] values = new Object[0];",
+				"",
+				"\t// Null for a node without a value",
+				"\t@SuppressWarnings(\"unchecked\")",
+				"\tT get(Node node) {",
+				"\t\tint index = node.id - base;",
+				"\t\treturn index >= 0 && index < values.length ? (T) values[index] : null;",
+				"\t}",
+				"",
+				"\tboolean contains(Node node) {",
+				"\t\treturn get(node) != null;",
+				"\t}",
+				"",
+				"\tvoid put(Node node, T value) {",
+				"\t\tint index = index(node);",
+				"\t\tvalues[index] = value;",
+				"\t}",
+				"",
+				"\tNodeTable<T> copy() {",
+				"\t\tNodeTable<T> copy = new NodeTable<>();",
+				"\t\tcopy.base = base;",
+				"\t\tcopy.values = values.clone();",
+				"\t\treturn copy;",
+				"\t}",
+				"",
+				"\t// Grows the array to cover the node's id",
+				"\tprivate int index(Node node) {",
+				"\t\tif (values.length == 0) {",
+				"\t\t\tbase = node.id;",
+				"\t\t\tvalues = new Object[16];",
+				"\t\t}",
+				"",
+				"\t\tint index = node.id - base;",
+				"\t\tif (index < 0) {",
+				"\t\t\tint shift = Math.max(-index, values.length);",
+				"\t\t\tObject[] grown = new Object[values.length + shift];",
+				"\t\t\tSystem.arraycopy(values, 0, grown, shift, values.length);",
+				"\t\t\tvalues = grown;",
+				"\t\t\tbase -= shift;",
+				"\t\t\tindex += shift;",
+				"\t\t} else if (index >= values.length) {",
+				"\t\t\tvalues = Arrays.copyOf(values, Math.max(index + 1, values.length * 2));",
+				"\t\t}",
+				"",
+				"\t\treturn index;",
+				"\t}",
+				"}");
+
+		defineFile(outputDir, "IntNodeTable",
+				"package com.jcode.lox;",
+				"",
+				"import java.util.Arrays;",
+				"",
+				"// A NodeTable of non-negative ints, stored unboxed. Each is kept plus one so",
+				"// an unset entry reads as MISSING.",
+				"final class IntNodeTable {",
+				"\tstatic final int MISSING = -1;",
+				"",
+				"\tprivate int base = 0;",
+				"\tprivate int[] values = new int[0];",
+				"",
+				"\tint get(Node node) {",
+				"\t\tint index = node.id - base;",
+				"\t\treturn index >= 0 && index < values.length ? values[index] - 1 : MISSING;",
+				"\t}",
+				"",
+				"\tboolean contains(Node node) {",
+				"\t\treturn get(node) != MISSING;",
+				"\t}",
+				"",
+				"\tvoid put(Node node, int value) {",
+				"\t\tint index = index(node);",
+				"\t\tvalues[index] = value + 1;",
+				"\t}",
+				"",
+				"\tIntNodeTable copy() {",
+				"\t\tIntNodeTable copy = new IntNodeTable();",
+				"\t\tcopy.base = base;",
+				"\t\tcopy.values = values.clone();",
+				"\t\treturn copy;",
+				"\t}",
+				"",
+				"\t// Grows the array to cover the node's id",
+				"\tprivate int index(Node node) {",
+				"\t\tif (values.length == 0) {",
+				"\t\t\tbase = node.id;",
+				"\t\t\tvalues = new int[16];",
+				"\t\t}",
+				"",
+				"\t\tint index = node.id - base;",
+				"\t\tif (index < 0) {",
+				"\t\t\tint shift = Math.max(-index, values.length);",
+				"\t\t\tint[] grown = new int[values.length + shift];",
+				"\t\t\tSystem.arraycopy(values, 0, grown, shift, values.length);",
+				"\t\t\tvalues = grown;",
+				"\t\t\tbase -= shift;",
+				"\t\t\tindex += shift;",
+				"\t\t} else if (index >= values.length) {",
+				"\t\t\tvalues = Arrays.copyOf(values, Math.max(index + 1, values.length * 2));",
+				"\t\t}",
+				"",
+				"\t\treturn index;",
+				"\t}",
+				"}");
+
+		defineFile(outputDir, "NodeCounters",
+				"package com.jcode.lox;",
+				"",
+				"// Profiling counters for the nodes with ids in a fixed range, which any",
+				"// number of threads can bump at once. Counts from racing threads can be lost,",
+				"// which doesn't matter for deciding what's hot, but every count up to the",
+				"// highest is returned by some increment.",
+				"final class NodeCounters {",
+				"\tprivate final int base;",
+				"\tprivate final int[] counts;",
+				"",
+				"\tNodeCounters(int first, int last) {",
+				"\t\tthis.base = first;",
+				"\t\tthis.counts = new int[Math.max(0, last - first + 1)];",
+				"\t}",
+				"",
+				"\tint get(Node node) {",
+				"\t\tint index = node.id - base;",
+				"\t\treturn index >= 0 && index < counts.length ? counts[index] : 0;",
+				"\t}",
+				"",
+				"\t// The node's new count, or 0 if it's outside the range. Counts stop at",
+				"\t// Integer.MAX_VALUE.",
+				"\tint increment(Node node) {",
+				"\t\tint index = node.id - base;",
+				"\t\tif (index < 0 || index >= counts.length)",
+				"\t\t\treturn 0;",
+				"",
+				"\t\tint count = counts[index];",
+				"\t\tif (count != Integer.MAX_VALUE) {",
+				"\t\t\tcounts[index] = ++count;",
+				"\t\t}",
+				"",
+				"\t\treturn count;",
+				"\t}",
+				"}");
+	}
+
+	private static void defineFile(String outputDir, String className, String... lines) throws IOException {
+		PrintWriter writer = new PrintWriter(outputDir + "/" + className + ".java", "UTF-8");
+		for (String line : lines) {
+			writer.println(line);
+		}
+
+		writer.close();
+	}
+
 	private static void defineVisitor(PrintWriter writer, String baseName, List<String> types) {
 		writer.println("\tinterface Visitor<R> {");
 
@@ -81,12 +277,35 @@ public class GenerateAst {
 		writer.println("\t}");
 	}
 
+	// A dense number per node class, so the interpreter can dispatch with a
+	// switch instead of a virtual call to accept()
+	private static void defineKinds(PrintWriter writer, String baseName, List<String> types) {
+		writer.println();
+		for (int i = 0; i < types.size(); i++) {
+			String typeName = types.get(i).split(":")[0].trim();
+			writer.println("\tstatic final int " + kindName(typeName) + " = " + i + ";");
+		}
+
+		writer.println();
+		writer.println("\tfinal int kind;");
+		writer.println();
+		writer.println("\t" + baseName + "(int kind) {");
+		writer.println("\t\tthis.kind = kind;");
+		writer.println("\t}");
+	}
+
+	// NumericBinary becomes NUMERIC_BINARY
+	private static String kindName(String typeName) {
+		return typeName.replaceAll("([a-z])([A-Z])", "$1_$2").toUpperCase();
+	}
+
 	private static void defineType(
 			PrintWriter writer, String baseName, String className, String fieldList) {
 		writer.println("\tstatic class " + className + " extends " + baseName + " {");
 
 		// Constructor
 		writer.println("\t\t" + className + "(" + fieldList + ") {");
+		writer.println("\t\t\tsuper(" + kindName(className) + ");");
 
 		// Store parameters in fields
 		String[] fields = fieldList.split(", ");
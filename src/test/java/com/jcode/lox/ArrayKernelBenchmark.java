@@ -0,0 +1,63 @@
+package com.jcode.lox;
+
+import java.io.InputStream;
+
+/**
+ * Compares the bulk array natives against the same work written as a Lox
+ * for loop, over two arrays of a million numbers.
+ *
+ * Run with: java -cp target/classes:target/test-classes com.jcode.lox.ArrayKernelBenchmark
+ */
+public class ArrayKernelBenchmark {
+	private static final int WARMUP_RUNS = 5;
+	private static final int MEASURED_RUNS = 10;
+
+	private static final String SETUP = "var n = 1000000;\n"
+			+ "var a = array(n, 0);\n"
+			+ "var b = array(n, 0);\n"
+			+ "for (var i = 0; i < n; i = i + 1) { a[i] = i * 0.5; b[i] = n - i; }\n"
+			+ "var result = nil;\n";
+
+	private static final String[][] CASES = {
+			{ "dot",
+					"var s = 0; for (var i = 0; i < n; i = i + 1) { s = s + a[i] * b[i]; } result = s;",
+					"result = dot(a, b);" },
+			{ "add",
+					"var c = array(n, 0); for (var i = 0; i < n; i = i + 1) { c[i] = a[i] + b[i]; } result = c;",
+					"result = add(a, b);" },
+			{ "scale",
+					"var c = array(n, 0); for (var i = 0; i < n; i = i + 1) { c[i] = a[i] * 3; } result = c;",
+					"result = scale(a, 3);" },
+			{ "max",
+					"var m = a[0]; for (var i = 1; i < n; i = i + 1) { if (a[i] > m) m = a[i]; } result = m;",
+					"result = max(a);" },
+	};
+
+	public static void main(String[] args) {
+		ErrorReporter reporter = new ErrorReporter(System.err);
+		Interpreter interpreter = new Interpreter(System.out, new LineInput(InputStream.nullInputStream()), reporter);
+		interpreter.interpret(LoxProgram.compile(SETUP, reporter));
+
+		System.out.printf("%-8s %12s %12s %10s%n", "op", "loop (ms)", "native (ms)", "speedup");
+		for (String[] test : CASES) {
+			double loop = best(interpreter, LoxProgram.compile(test[1], reporter));
+			double bulk = best(interpreter, LoxProgram.compile(test[2], reporter));
+			System.out.printf("%-8s %12.2f %12.3f %9.0fx%n", test[0], loop, bulk, loop / bulk);
+		}
+	}
+
+	private static double best(Interpreter interpreter, LoxProgram program) {
+		for (int i = 0; i < WARMUP_RUNS; i++) {
+			interpreter.interpret(program);
+		}
+
+		long best = Long.MAX_VALUE;
+		for (int i = 0; i < MEASURED_RUNS; i++) {
+			long start = System.nanoTime();
+			interpreter.interpret(program);
+			best = Math.min(best, System.nanoTime() - start);
+		}
+
+		return best / 1e6;
+	}
+}
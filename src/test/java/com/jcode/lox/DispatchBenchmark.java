@@ -0,0 +1,211 @@
+package com.jcode.lox;
+
+import java.io.InputStream;
+
+import com.jcode.lox.Expr.Array;
+import com.jcode.lox.Expr.Assign;
+import com.jcode.lox.Expr.Binary;
+import com.jcode.lox.Expr.Bound;
+import com.jcode.lox.Expr.Call;
+import com.jcode.lox.Expr.Dictionary;
+import com.jcode.lox.Expr.Get;
+import com.jcode.lox.Expr.GetThis;
+import com.jcode.lox.Expr.Grouping;
+import com.jcode.lox.Expr.Hoisted;
+import com.jcode.lox.Expr.Increment;
+import com.jcode.lox.Expr.Index;
+import com.jcode.lox.Expr.IndexSet;
+import com.jcode.lox.Expr.Inline;
+import com.jcode.lox.Expr.Invoke;
+import com.jcode.lox.Expr.Literal;
+import com.jcode.lox.Expr.LocalCompare;
+import com.jcode.lox.Expr.Logical;
+import com.jcode.lox.Expr.Negate;
+import com.jcode.lox.Expr.NumericBinary;
+import com.jcode.lox.Expr.Set;
+import com.jcode.lox.Expr.Super;
+import com.jcode.lox.Expr.Ternary;
+import com.jcode.lox.Expr.This;
+import com.jcode.lox.Expr.Unary;
+import com.jcode.lox.Expr.Variable;
+import com.jcode.lox.Stmt.Block;
+import com.jcode.lox.Stmt.Break;
+import com.jcode.lox.Stmt.Class;
+import com.jcode.lox.Stmt.Continue;
+import com.jcode.lox.Stmt.Expression;
+import com.jcode.lox.Stmt.Function;
+import com.jcode.lox.Stmt.Hoist;
+import com.jcode.lox.Stmt.If;
+import com.jcode.lox.Stmt.Return;
+import com.jcode.lox.Stmt.Var;
+import com.jcode.lox.Stmt.While;
+
+/**
+ * Compares the interpreter's dispatch through accept() against switching on
+ * node kinds, over a few scripts that mostly run small nodes. The switch
+ * measured no faster on JDK 17, so the interpreter keeps accept() and the
+ * switch lives here, where it can be rechecked on other JVMs.
+ *
+ * Pass "switch" or "visitor" to time one of them alone, so the other's
+ * subclass doesn't share the JIT's profile of the interpreter.
+ *
+ * Run with: java -cp target/classes:target/test-classes com.jcode.lox.DispatchBenchmark [switch|visitor]
+ */
+public class DispatchBenchmark {
+	private static final int WARMUP_RUNS = 20;
+	private static final int MEASURED_RUNS = 10;
+
+	private static final String[][] CASES = {
+			{ "fib", "fun fib(n) { if (n < 2) return n; return fib(n - 1) + fib(n - 2); } fib(25);" },
+			{ "loop",
+					"var s = 0; for (var i = 0; i < 1000000; i = i + 1) { if (i > 10) s = s + i * 2; else s = s - 1; }" },
+			{ "methods",
+					"class P { init() { this.n = 0; } add(d) { this.n = this.n + d; } }"
+							+ " var p = P(); for (var i = 0; i < 300000; i = i + 1) p.add(i);" },
+			{ "closure",
+					"fun counter() { var c = 0; fun inc() { c = c + 1; return c; } return inc; }"
+							+ " var f = counter(); var t = 0; while (t < 300000) t = f();" },
+	};
+
+	public static void main(String[] args) {
+		String only = args.length > 0 ? args[0] : null;
+		ErrorReporter reporter = new ErrorReporter(System.err);
+		LineInput input = new LineInput(InputStream.nullInputStream());
+
+		Interpreter switched = new SwitchInterpreter(System.out, input, reporter);
+		Interpreter visitor = "switch".equals(only) ? null : new Interpreter(System.out, input, reporter);
+
+		System.out.printf("%-8s %12s %12s %10s%n", "script", "switch (ms)", "visitor (ms)", "speedup");
+		for (String[] test : CASES) {
+			LoxProgram program = LoxProgram.compile(test[1], reporter);
+			double switchTime = "visitor".equals(only) ? Double.NaN : best(switched, program);
+			double visitorTime = visitor == null ? Double.NaN : best(visitor, program);
+			System.out.printf("%-8s %12.2f %12.2f %9.2fx%n", test[0], switchTime, visitorTime,
+					visitorTime / switchTime);
+		}
+	}
+
+	private static double best(Interpreter interpreter, LoxProgram program) {
+		for (int i = 0; i < WARMUP_RUNS; i++) {
+			interpreter.interpret(program);
+		}
+
+		long best = Long.MAX_VALUE;
+		for (int i = 0; i < MEASURED_RUNS; i++) {
+			long start = System.nanoTime();
+			interpreter.interpret(program);
+			best = Math.min(best, System.nanoTime() - start);
+		}
+
+		return best / 1e6;
+	}
+
+	// Calls the visit methods directly by node kind, which as one call site
+	// per kind could be inlined where accept()'s can't
+	private static class SwitchInterpreter extends Interpreter {
+		SwitchInterpreter(java.io.PrintStream out, LineInput input, ErrorReporter reporter) {
+			super(out, input, reporter);
+		}
+
+		@Override
+		Object evaluate(Expr expr) {
+			switch (expr.kind) {
+				case Expr.TERNARY:
+					return visitTernaryExpr((Ternary) expr);
+				case Expr.ASSIGN:
+					return visitAssignExpr((Assign) expr);
+				case Expr.INCREMENT:
+					return visitIncrementExpr((Increment) expr);
+				case Expr.BINARY:
+					return visitBinaryExpr((Binary) expr);
+				case Expr.NUMERIC_BINARY:
+					return visitNumericBinaryExpr((NumericBinary) expr);
+				case Expr.LOCAL_COMPARE:
+					return visitLocalCompareExpr((LocalCompare) expr);
+				case Expr.CALL:
+					return visitCallExpr((Call) expr);
+				case Expr.INVOKE:
+					return visitInvokeExpr((Invoke) expr);
+				case Expr.BOUND:
+					return visitBoundExpr((Bound) expr);
+				case Expr.INLINE:
+					return visitInlineExpr((Inline) expr);
+				case Expr.HOISTED:
+					return visitHoistedExpr((Hoisted) expr);
+				case Expr.GET:
+					return visitGetExpr((Get) expr);
+				case Expr.GET_THIS:
+					return visitGetThisExpr((GetThis) expr);
+				case Expr.SET:
+					return visitSetExpr((Set) expr);
+				case Expr.INDEX:
+					return visitIndexExpr((Index) expr);
+				case Expr.INDEX_SET:
+					return visitIndexSetExpr((IndexSet) expr);
+				case Expr.THIS:
+					return visitThisExpr((This) expr);
+				case Expr.SUPER:
+					return visitSuperExpr((Super) expr);
+				case Expr.GROUPING:
+					return visitGroupingExpr((Grouping) expr);
+				case Expr.LITERAL:
+					return visitLiteralExpr((Literal) expr);
+				case Expr.ARRAY:
+					return visitArrayExpr((Array) expr);
+				case Expr.DICTIONARY:
+					return visitDictionaryExpr((Dictionary) expr);
+				case Expr.LOGICAL:
+					return visitLogicalExpr((Logical) expr);
+				case Expr.VARIABLE:
+					return visitVariableExpr((Variable) expr);
+				case Expr.UNARY:
+					return visitUnaryExpr((Unary) expr);
+				case Expr.NEGATE:
+					return visitNegateExpr((Negate) expr);
+				default:
+					return expr.accept(this);
+			}
+		}
+
+		@Override
+		void execute(Stmt stmt) {
+			switch (stmt.kind) {
+				case Stmt.BREAK:
+					visitBreakStmt((Break) stmt);
+					return;
+				case Stmt.CONTINUE:
+					visitContinueStmt((Continue) stmt);
+					return;
+				case Stmt.BLOCK:
+					visitBlockStmt((Block) stmt);
+					return;
+				case Stmt.EXPRESSION:
+					visitExpressionStmt((Expression) stmt);
+					return;
+				case Stmt.FUNCTION:
+					visitFunctionStmt((Function) stmt);
+					return;
+				case Stmt.CLASS:
+					visitClassStmt((Class) stmt);
+					return;
+				case Stmt.RETURN:
+					visitReturnStmt((Return) stmt);
+					return;
+				case Stmt.IF:
+					visitIfStmt((If) stmt);
+					return;
+				case Stmt.WHILE:
+					visitWhileStmt((While) stmt);
+					return;
+				case Stmt.HOIST:
+					visitHoistStmt((Hoist) stmt);
+					return;
+				case Stmt.VAR:
+					visitVarStmt((Var) stmt);
+					return;
+				default:
+					stmt.accept(this);
+			}
+		}
+	}
+}
@@ -0,0 +1,40 @@
+package com.jcode.lox;
+
+import java.io.InputStream;
+
+import junit.framework.TestCase;
+
+/**
+ * Checks parallelReduce() against the sequential fold it stands for, with
+ * initial values that aren't an identity for the callback.
+ */
+public class ParallelNativesTest extends TestCase {
+	private static final String PLUS = "fun plus(a, b) { return a + b; }\n";
+
+	public void testInitialIsFoldedOnce() {
+		assertEquals(16.0, run(PLUS + "result = parallelReduce([1, 2, 3], plus, 10);"));
+	}
+
+	public void testInitialIsFoldedOnceOverManyChunks() {
+		assertEquals(10001.0, run(PLUS + "result = parallelReduce(array(10000, 1), plus, 1);"));
+	}
+
+	public void testEmptyArrayGivesInitial() {
+		assertEquals(7.0, run(PLUS + "result = parallelReduce([], plus, 7);"));
+	}
+
+	// Strings don't commute, so chunks must be folded in array order
+	public void testChunksAreFoldedInOrder() {
+		assertEquals(">abc", run(PLUS + "var a = array(3000, \"\"); a[0] = \"a\"; a[1500] = \"b\"; a[2999] = \"c\";"
+				+ " result = parallelReduce(a, plus, \">\");"));
+	}
+
+	private static Object run(String source) {
+		ErrorReporter reporter = new ErrorReporter(System.err);
+		Interpreter interpreter = new Interpreter(System.out, new LineInput(InputStream.nullInputStream()), reporter);
+		interpreter.interpret(LoxProgram.compile("var result;\n" + source, reporter));
+		assertEquals(0, reporter.exitCode());
+
+		return interpreter.globals.get(new Token(TokenType.IDENTIFIER, Symbol.intern("result"), 0));
+	}
+}
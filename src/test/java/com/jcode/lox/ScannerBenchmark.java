@@ -0,0 +1,73 @@
+package com.jcode.lox;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+
+/**
+ * Measures scanner throughput in MB/s, over a script given on the command
+ * line or a generated one.
+ *
+ * Run with: java -cp target/classes:target/test-classes com.jcode.lox.ScannerBenchmark [script]
+ */
+public class ScannerBenchmark {
+	private static final int WARMUP_RUNS = 10;
+	private static final int MEASURED_RUNS = 20;
+
+	public static void main(String[] args) throws IOException {
+		String source = args.length > 0 ? MappedSource.open(Paths.get(args[0])).toString() : generate(16 << 20);
+		double megabytes = source.length() / (1024.0 * 1024.0);
+
+		for (int i = 0; i < WARMUP_RUNS; i++) {
+			scan(source);
+		}
+
+		long best = Long.MAX_VALUE;
+		long total = 0;
+		int tokens = 0;
+		for (int i = 0; i < MEASURED_RUNS; i++) {
+			long start = System.nanoTime();
+			tokens = scan(source);
+			long elapsed = System.nanoTime() - start;
+
+			best = Math.min(best, elapsed);
+			total += elapsed;
+		}
+
+		System.out.printf("%.1f MB, %d tokens%n", megabytes, tokens);
+		System.out.printf("best: %.1f MB/s%n", megabytes / (best / 1e9));
+		System.out.printf("mean: %.1f MB/s%n", megabytes / (total / 1e9 / MEASURED_RUNS));
+	}
+
+	private static int scan(CharSequence source) {
+		Scanner scanner = new Scanner(source, new ErrorReporter(System.err));
+		TokenBuffer buffer = new TokenBuffer();
+		int count = 0;
+		int scanned;
+
+		// Reuse one window of tokens, as the parser does
+		while ((scanned = scanner.scan(buffer, 4096)) > 0) {
+			count += scanned;
+			buffer.retainLast();
+		}
+
+		return count;
+	}
+
+	private static String generate(int size) {
+		StringBuilder builder = new StringBuilder(size + 256);
+		int i = 0;
+		while (builder.length() < size) {
+			builder.append("class Node").append(i).append(" < Base {\n")
+					.append("  init(value) { this.value = value; this.next = nil; }\n")
+					.append("  sum() { var total = 0; for (var i = 0; i < 10; i += 1) { total = total + this.value * i; } return total; }\n")
+					.append("}\n")
+					.append("// node ").append(i).append('\n')
+					.append("var node").append(i).append(" = Node").append(i).append("(").append(i).append(".5);\n")
+					.append("if (node").append(i).append(".sum() >= 100 and true or false) { println(\"big \" + str(")
+					.append(i).append(")); } else { while (false) { break; } }\n");
+			i++;
+		}
+
+		return builder.toString();
+	}
+}